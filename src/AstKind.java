@@ -0,0 +1,68 @@
+/**
+ * The kinds of Node in the AST of the SAD Compiler for Alan Labouseur's compilers class, so that
+ * passes over the AST can tell what a Node is without looking at its value. The statements keep the
+ * label they have always had in the AST; every other kind is a leaf, which is labeled with its
+ * value.
+ *
+ * @author Tim Polizzi
+ */
+public enum AstKind {
+  BLOCK("Block"),
+  PRINT_STMT("Print Statement"),
+  ASSIGN_STMT("Assignment Statement"),
+  VAR_DECL("Variable Declaration"),
+  WHILE_STMT("While Statement"),
+  IF_STMT("If Statement"),
+  TYPE(null),
+  ID(null),
+  INT(null),
+  STRING(null),
+  BOOL(null),
+  BOOL_OP(null),
+  INT_OP(null),
+  OTHER(null);
+
+  private final String label;
+
+  AstKind(String label) {
+    this.label = label;
+  }
+
+  /**
+   * Gets the label a statement has in the AST.
+   *
+   * @return The label, or null for the kinds that are labeled with their value.
+   */
+  public String getLabel() {
+    return label;
+  }
+
+  /**
+   * Works out what kind of leaf a Token is.
+   *
+   * @param kind The kind of the Token.
+   * @return The kind of leaf, or OTHER for Tokens that never end up in the AST.
+   */
+  public static AstKind of(TokenKind kind) {
+    switch (kind) {
+      case I_TYPE:
+      case S_TYPE:
+      case B_TYPE:
+        return TYPE;
+      case CHAR:
+        return ID;
+      case INT:
+        return INT;
+      case T_BOOL:
+      case F_BOOL:
+        return BOOL;
+      case EQUAL:
+      case NOT_EQUAL:
+        return BOOL_OP;
+      case INT_OP:
+        return INT_OP;
+      default:
+        return OTHER;
+    }
+  }
+}
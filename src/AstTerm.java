@@ -0,0 +1,107 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable AST subtree for the SAD Compiler for Alan Labouseur's compilers class. Unlike a Node
+ * a term has no parent and no position, only its kind, its value and its children, so the same term
+ * can stand for every place a subtree appears. Terms are made by an AstTermFactory, which hands
+ * back the term it already has for any subtree it has seen before.
+ *
+ * @author Tim Polizzi
+ */
+public final class AstTerm {
+
+  private final AstKind kind;
+  private final String val;
+  private final AstTerm[] children;
+  private final int hash;
+
+  /**
+   * Creates a new term. Only an AstTermFactory should do this, so that it can share them.
+   */
+  AstTerm(AstKind kind, String val, AstTerm[] children) {
+    this.kind = kind;
+    this.val = val;
+    this.children = children;
+
+    int h = kind.ordinal();
+    h = 31 * h + (val == null ? 0 : val.hashCode());
+    for (AstTerm child : children) {
+      h = 31 * h + child.hash;
+    }
+    hash = h;
+  }
+
+  public AstKind getKind() {
+    return kind;
+  }
+
+  public String getVal() {
+    return val;
+  }
+
+  public List<AstTerm> getChildren() {
+    return Collections.unmodifiableList(Arrays.asList(children));
+  }
+
+  /**
+   * Gets a hash of the structure of the term, which only depends on the kinds and values in it, so
+   * it is the same for the same subtree in any program on any run.
+   *
+   * @return The structural hash.
+   */
+  public int getStructuralHash() {
+    return hash;
+  }
+
+  /**
+   * Two terms are equal if they have the same kind and value and the very same children. Since a
+   * factory shares every subtree, for terms from one factory this is the same as having the same
+   * structure.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof AstTerm)) {
+      return false;
+    }
+
+    AstTerm other = (AstTerm) o;
+    if (hash != other.hash || kind != other.kind || children.length != other.children.length) {
+      return false;
+    }
+    if (val == null ? other.val != null : !val.equals(other.val)) {
+      return false;
+    }
+    for (int i = 0; i < children.length; i++) {
+      if (children[i] != other.children[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    if (children.length == 0) {
+      return val;
+    }
+
+    StringBuilder toReturn = new StringBuilder(String.valueOf(val)).append('(');
+    for (int i = 0; i < children.length; i++) {
+      if (i > 0) {
+        toReturn.append(", ");
+      }
+      toReturn.append(children[i].toString());
+    }
+    return toReturn.append(')').toString();
+  }
+}
@@ -0,0 +1,118 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Makes AstTerms for the SAD Compiler for Alan Labouseur's compilers class, sharing every subtree
+ * that has the same structure. A program that says the same thing over and over, like the same
+ * (a == b) condition or the same x = 1, only ever has one term for it.
+ *
+ * @author Tim Polizzi
+ */
+public class AstTermFactory {
+
+  private static final AstTerm[] NO_CHILDREN = new AstTerm[0];
+
+  private Map<AstTerm, AstTerm> terms;
+  private int shared;
+
+  /**
+   * Creates a new AstTermFactory with no terms yet.
+   */
+  public AstTermFactory() {
+    terms = new HashMap<>();
+    shared = 0;
+  }
+
+  /**
+   * Gets the term for a leaf.
+   *
+   * @param kind The kind of the leaf.
+   * @param val The value of the leaf.
+   * @return The shared term.
+   */
+  public AstTerm make(AstKind kind, String val) {
+    return share(new AstTerm(kind, val, NO_CHILDREN));
+  }
+
+  /**
+   * Gets the term for a subtree whose children already have terms from this factory.
+   *
+   * @param kind The kind of the root of the subtree.
+   * @param val The value of the root of the subtree.
+   * @param children The terms of the children.
+   * @return The shared term.
+   */
+  public AstTerm make(AstKind kind, String val, List<AstTerm> children) {
+    return share(new AstTerm(kind, val, children.toArray(NO_CHILDREN)));
+  }
+
+  /**
+   * Gets the term for a Node and everything under it. The tree is walked with a stack rather than
+   * by recursing, and the children of each Node get their terms before it does.
+   *
+   * @param node The root of the subtree.
+   * @return The shared term.
+   */
+  public AstTerm intern(Node node) {
+    List<Node> pending = new ArrayList<>();
+    List<List<AstTerm>> childTerms = new ArrayList<>();
+    AstTerm result = null;
+
+    pending.add(node);
+    childTerms.add(new ArrayList<>());
+    Node next = node.getFirstChild();
+
+    while (!pending.isEmpty()) {
+      if (next != null) {
+        pending.add(next);
+        childTerms.add(new ArrayList<>());
+        next = next.getFirstChild();
+        continue;
+      }
+
+      // Everything under the last pending Node has its term, so it can have one too
+      int last = pending.size() - 1;
+      Node done = pending.remove(last);
+      AstTerm term = make(done.getKind(), done.getVal(), childTerms.remove(last));
+
+      if (pending.isEmpty()) {
+        result = term;
+      } else {
+        childTerms.get(last - 1).add(term);
+        next = done.getNextSibling();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Gets how many different terms have been made.
+   *
+   * @return The number of terms.
+   */
+  public int size() {
+    return terms.size();
+  }
+
+  /**
+   * Gets how many times a term that was already made was handed out again instead of a new one.
+   *
+   * @return The number of times a term was shared.
+   */
+  public int getShared() {
+    return shared;
+  }
+
+  private AstTerm share(AstTerm term) {
+    AstTerm existing = terms.putIfAbsent(term, term);
+
+    if (existing != null) {
+      shared++;
+      return existing;
+    }
+    return term;
+  }
+}
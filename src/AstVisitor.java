@@ -0,0 +1,91 @@
+/**
+ * Something that walks an AST with SyntaxTree.walk. Each Node is visited before its children, and
+ * left after them if its children were walked.
+ *
+ * By default a Node is handed to the method for its kind, so a pass only has to write the ones it
+ * cares about, and anything else has its children walked.
+ *
+ * @author Tim Polizzi
+ */
+public interface AstVisitor {
+
+  /**
+   * What the walk does after a Node has been visited.
+   */
+  enum Walk {
+    /**
+     * Walk the children of the Node, then leave it.
+     */
+    CHILDREN,
+    /**
+     * Go on to the next sibling of the Node without walking its children.
+     */
+    SKIP_CHILDREN,
+    /**
+     * Skip the children of the Node and every sibling after it, going straight to leaving its
+     * parent.
+     */
+    SKIP_SIBLINGS
+  }
+
+  /**
+   * Called on a Node before its children.
+   *
+   * @param node The Node.
+   * @return What the walk does next.
+   */
+  default Walk visit(Node node) {
+    switch (node.getKind()) {
+      case BLOCK:
+        return visitBlock(node);
+      case PRINT_STMT:
+        return visitPrint(node);
+      case ASSIGN_STMT:
+        return visitAssign(node);
+      case VAR_DECL:
+        return visitVarDecl(node);
+      case WHILE_STMT:
+        return visitWhile(node);
+      case IF_STMT:
+        return visitIf(node);
+      default:
+        return visitLeaf(node);
+    }
+  }
+
+  /**
+   * Called on a Node after its children, if they were walked.
+   *
+   * @param node The Node.
+   */
+  default void leave(Node node) {
+  }
+
+  default Walk visitBlock(Node node) {
+    return Walk.CHILDREN;
+  }
+
+  default Walk visitPrint(Node node) {
+    return Walk.CHILDREN;
+  }
+
+  default Walk visitAssign(Node node) {
+    return Walk.CHILDREN;
+  }
+
+  default Walk visitVarDecl(Node node) {
+    return Walk.CHILDREN;
+  }
+
+  default Walk visitWhile(Node node) {
+    return Walk.CHILDREN;
+  }
+
+  default Walk visitIf(Node node) {
+    return Walk.CHILDREN;
+  }
+
+  default Walk visitLeaf(Node node) {
+    return Walk.CHILDREN;
+  }
+}
@@ -0,0 +1,289 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The machine code that Code Generation writes for the SAD Compiler for Alan Labouseur's compilers
+ * class, kept as bytes.
+ *
+ * The address of a variable and the distance of a jump are not known until everything has been
+ * written, so a placeholder is written for them instead, and where it is and what it is for is kept
+ * as a relocation. Once the addresses are known, resolve fills in every placeholder in one pass.
+ *
+ * @author Tim Polizzi
+ */
+public class CodeBuffer {
+
+  private static final int INITIAL_CAPACITY = 256;
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  private static final int VARIABLE = 0;
+  private static final int JUMP = 1;
+  private static final int STRING = 2;
+  private static final int BRANCH = 3;
+
+  private byte[] bytes;
+  private int size;
+
+  private int[] relocationOffsets;
+  private int[] relocationKinds;
+  private int[] relocationIds;
+  private int relocations;
+
+  /**
+   * Creates a new, empty CodeBuffer.
+   */
+  public CodeBuffer() {
+    bytes = new byte[INITIAL_CAPACITY];
+    size = 0;
+
+    relocationOffsets = new int[16];
+    relocationKinds = new int[16];
+    relocationIds = new int[16];
+    relocations = 0;
+  }
+
+  /**
+   * Writes bytes.
+   *
+   * @param values The bytes, of which only the low 8 bits are kept.
+   */
+  public void emit(int... values) {
+    for (int value : values) {
+      if (size == bytes.length) {
+        bytes = Arrays.copyOf(bytes, size * 2);
+      }
+      bytes[size++] = (byte) value;
+    }
+  }
+
+  /**
+   * Writes the two byte address of a variable, low byte first.
+   *
+   * @param id The ID of the variable in the VariableTable, or -1 for one that could not be found,
+   * which is written as address 0.
+   */
+  public void emitVariable(int id) {
+    if (id >= 0) {
+      relocate(VARIABLE, id);
+    }
+    emit(0x00, 0x00);
+  }
+
+  /**
+   * Writes the one byte of a jump.
+   *
+   * @param id The number of the jump in the JumpTable.
+   */
+  public void emitJump(int id) {
+    relocate(JUMP, id);
+    emit(0x00);
+  }
+
+  /**
+   * Writes the one byte address of a string in the heap.
+   *
+   * @param id The ID of the string in the StringPool.
+   */
+  public void emitString(int id) {
+    relocate(STRING, id);
+    emit(0x00);
+  }
+
+  /**
+   * Writes the one byte of a branch back to somewhere that has already been written, which is kept
+   * track of so that it still lands in the same place if bytes before it are deleted.
+   *
+   * @param target Where the branch goes, as a number of bytes from the start of the CodeBuffer.
+   */
+  public void emitBranch(int target) {
+    relocate(BRANCH, target);
+    emit(0x00);
+  }
+
+  /**
+   * Writes everything in another CodeBuffer, which is not to have any relocations of its own.
+   *
+   * @param other The CodeBuffer to be written.
+   */
+  public void append(CodeBuffer other) {
+    for (int i = 0; i < other.size; i++) {
+      emit(other.bytes[i]);
+    }
+  }
+
+  /**
+   * Gets how many bytes have been written, which is also where the next one goes.
+   *
+   * @return The number of bytes.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets a byte that has been written.
+   *
+   * @param offset Where the byte is.
+   * @return The byte, from 0 to 255, which for a placeholder is what it is until it is filled in.
+   */
+  public int get(int offset) {
+    return bytes[offset] & 0xFF;
+  }
+
+  /**
+   * Checks if a byte is a placeholder that is filled in by resolve.
+   *
+   * @param offset Where the byte is.
+   * @return True if it is the first byte of a placeholder, false otherwise.
+   */
+  public boolean isPlaceholder(int offset) {
+    return relocationAt(offset) >= 0;
+  }
+
+  /**
+   * Gets the variable whose address goes in a placeholder.
+   *
+   * @param offset Where the placeholder is.
+   * @return The ID of the variable in the VariableTable, or -1 if there is no placeholder for a
+   * variable there.
+   */
+  public int getVariable(int offset) {
+    int i = relocationAt(offset);
+    return i >= 0 && relocationKinds[i] == VARIABLE ? relocationIds[i] : -1;
+  }
+
+  /**
+   * Gets the string whose address goes in a placeholder.
+   *
+   * @param offset Where the placeholder is.
+   * @return The ID of the string in the StringPool, or -1 if there is no placeholder for a string
+   * there.
+   */
+  public int getString(int offset) {
+    int i = relocationAt(offset);
+    return i >= 0 && relocationKinds[i] == STRING ? relocationIds[i] : -1;
+  }
+
+  /**
+   * Gets where every branch written with emitBranch goes.
+   *
+   * @return The targets of the branches, as numbers of bytes from the start of the CodeBuffer.
+   */
+  public int[] getBranchTargets() {
+    int[] targets = new int[relocations];
+    int count = 0;
+
+    for (int i = 0; i < relocations; i++) {
+      if (relocationKinds[i] == BRANCH) {
+        targets[count++] = relocationIds[i];
+      }
+    }
+    return Arrays.copyOf(targets, count);
+  }
+
+  /**
+   * Deletes bytes, moving everything after them back. The placeholders in what is deleted go with
+   * it, and the branches that went past it are moved to still go to the same byte.
+   *
+   * @param deleted Where the bytes to be deleted are.
+   * @return Where each byte has been moved to, by where it was, with one more at the end for the
+   * end of the CodeBuffer. A byte that was deleted is moved to where the next one that was not
+   * ended up.
+   */
+  public int[] delete(BitSet deleted) {
+    int[] moved = new int[size + 1];
+    int kept = 0;
+
+    for (int i = 0; i < size; i++) {
+      moved[i] = kept;
+      if (!deleted.get(i)) {
+        bytes[kept++] = bytes[i];
+      }
+    }
+    moved[size] = kept;
+    size = kept;
+
+    int keptRelocations = 0;
+    for (int i = 0; i < relocations; i++) {
+      if (deleted.get(relocationOffsets[i])) {
+        continue;
+      }
+      relocationOffsets[keptRelocations] = moved[relocationOffsets[i]];
+      relocationKinds[keptRelocations] = relocationKinds[i];
+      relocationIds[keptRelocations] =
+          relocationKinds[i] == BRANCH ? moved[relocationIds[i]] : relocationIds[i];
+      keptRelocations++;
+    }
+    relocations = keptRelocations;
+
+    return moved;
+  }
+
+  /**
+   * Fills in every placeholder, now that the addresses of the variables, the jumps and the strings
+   * are known.
+   *
+   * @param variables The variables, which have had their addresses calculated.
+   * @param jumps The jumps, which have all been set.
+   * @param strings The strings, which have been given where they start.
+   */
+  public void resolve(VariableTable variables, JumpTable jumps, StringPool strings) {
+    for (int i = 0; i < relocations; i++) {
+      int offset = relocationOffsets[i];
+
+      if (relocationKinds[i] == VARIABLE) {
+        int address = variables.getAddress(relocationIds[i]);
+        bytes[offset] = (byte) address;
+        bytes[offset + 1] = (byte) (address >> 8);
+      } else if (relocationKinds[i] == STRING) {
+        bytes[offset] = (byte) strings.getAddress(relocationIds[i]);
+      } else if (relocationKinds[i] == BRANCH) {
+        bytes[offset] = (byte) relocationIds[i];
+      } else {
+        bytes[offset] = (byte) jumps.getJump(JumpTable.jumpName(relocationIds[i]));
+      }
+    }
+  }
+
+  /**
+   * Returns the machine code in string form in the proper format, which is eight bytes of hex to
+   * a line.
+   *
+   * @return The formatted String.
+   */
+  public String toString() {
+    StringBuilder toReturn = new StringBuilder(size * 3 + size / 8);
+
+    for (int i = 0; i < size; i++) {
+      if (i > 0 && i % 8 == 0) {
+        toReturn.append('\n');
+      }
+      toReturn.append(HEX[(bytes[i] >> 4) & 0xF]).append(HEX[bytes[i] & 0xF]).append(' ');
+    }
+
+    return toReturn.toString();
+  }
+
+  /**
+   * Finds the placeholder at a byte. The placeholders are always written in order, so they are
+   * searched by halves.
+   *
+   * @return The index of the placeholder, or -1 if there is not one there.
+   */
+  private int relocationAt(int offset) {
+    int i = Arrays.binarySearch(relocationOffsets, 0, relocations, offset);
+    return i >= 0 ? i : -1;
+  }
+
+  private void relocate(int kind, int id) {
+    if (relocations == relocationOffsets.length) {
+      relocationOffsets = Arrays.copyOf(relocationOffsets, relocations * 2);
+      relocationKinds = Arrays.copyOf(relocationKinds, relocations * 2);
+      relocationIds = Arrays.copyOf(relocationIds, relocations * 2);
+    }
+    relocationOffsets[relocations] = size;
+    relocationKinds[relocations] = kind;
+    relocationIds[relocations] = id;
+    relocations++;
+  }
+}
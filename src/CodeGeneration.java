@@ -1,43 +1,94 @@
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
  * Code Generation for the SAD Compiler for Alan Labouseur's compilers class.
  *
  * @author Tim Polizzi
  */
-public class CodeGeneration {
+public class CodeGeneration implements AstVisitor {
 
-  private String exeEnv;
+  // How many bytes of memory there are for the code, the variables and the heap
+  private static final int MEMORY_SIZE = 256;
+
+  private CodeBuffer code;
   private JumpTable jumpTable;
   private VariableTable variableTable;
   private int bytesUsed;
   private SymbolTable table;
-  private int currentEndOfHeap;
-  private String stringForHeap;
+  private StringPool strings;
+  private int saved;
   private SyntaxTree ast;
+  private Deque<Level> levels;
+
+  // The Assignment Statements to variables that are never read, which are left out
+  private BitSet deadStores;
+  private int deadStoreCount;
 
   /**
    * Create a new CodeGeneration object that generates Machine Code from a given AST
    *
    * @param ast The given AST to be converted into machine code.
+   * @param defUse Where each variable in the SymbolTable is defined and read in the AST, or null
+   * if it is not known, in which case every assignment is kept.
    */
-  public CodeGeneration(SyntaxTree ast, int programNo, SymbolTable table) {
-    exeEnv = "";
+  public CodeGeneration(SyntaxTree ast, int programNo, SymbolTable table, DefUseIndex defUse) {
+    code = new CodeBuffer();
     bytesUsed = 0;
-    currentEndOfHeap = 96;
-    stringForHeap = "";
+    strings = new StringPool();
     jumpTable = new JumpTable();
     variableTable = new VariableTable();
     this.table = table;
     this.ast = ast;
+    findDeadStores(defUse);
 
     System.out.println("\nINFO Code Generation - Generating code for program " + programNo + "...");
 
     generateFromAST(ast);
 
-    System.out.println(toString());
+    System.out.println("INFO Code Generation - Left out " + deadStoreCount
+        + " assignment(s) to variables that are never read");
+    System.out.println("INFO Code Generation - Peephole optimization saved " + saved
+        + " byte(s)");
+
+    if (success()) {
+      System.out.println(toString());
+    } else {
+      System.out.println("ERROR Code Generation - Program " + programNo + " needs " + bytesUsed
+          + " bytes of memory, but there are only " + MEMORY_SIZE);
+    }
+  }
+
+  /**
+   * Create a new CodeGeneration object that generates Machine Code from a given AST, without
+   * knowing where its variables are defined and read.
+   *
+   * @param ast The given AST to be converted into machine code.
+   */
+  public CodeGeneration(SyntaxTree ast, int programNo, SymbolTable table) {
+    this(ast, programNo, table, null);
+  }
+
+  /**
+   * Finds the Assignment Statements to variables that are never read. Expressions do nothing but
+   * work out a value, so nothing is lost by leaving them out.
+   */
+  private void findDeadStores(DefUseIndex defUse) {
+    deadStores = new BitSet();
+    deadStoreCount = 0;
+    if (defUse == null || table == null) {
+      return;
+    }
+
+    for (SymbolItem item : table.getList()) {
+      if (!defUse.isRead(item.getIndex())) {
+        for (int node : defUse.getDefs(item.getIndex())) {
+          deadStores.set(node);
+        }
+      }
+    }
   }
 
   /**
@@ -46,101 +97,195 @@ public class CodeGeneration {
    * @param ast The AST that code will be generated from
    */
   private void generateFromAST(SyntaxTree ast) {
-    Node root = ast.getRoot();
-    List<Node> childList = root.getChildren();
-    int depth = 0;
-
-    dft(childList, depth);
-    exeEnv +="00";
-    bytesUsed++;
-    variableTable.calculateAddresses(bytesUsed);
-
-    // Replaces temporary variables with the locations in memory
-    for (VariableItem item : variableTable.getItemList()) {
-      exeEnv = exeEnv.replaceAll(item.getTemp(), String.format("%H00",item.getAddress()));
-    }
+    levels = new ArrayDeque<>();
+    levels.push(new Level());
 
-    // Replaces temporary jumps with the actual jump
-    for(String temp : jumpTable.getTemps()) {
-      exeEnv = exeEnv.replaceAll(temp, String.format("%H00", jumpTable.getJump(temp)));
+    ast.walk(this);
+    code.emit(0x00);
+
+    Peephole peephole = new Peephole(code, jumpTable);
+    saved = peephole.getSaved();
+    variableTable.calculateAddresses(code.size());
+
+    // The variables go right after the code, and the strings go at the very end of memory
+    int heapStart = MEMORY_SIZE - strings.size();
+    bytesUsed = code.size() + variableTable.storedVars() + strings.size();
+    if (!success()) {
+      return;
     }
+    strings.setStart(heapStart);
 
-    int diff = currentEndOfHeap - bytesUsed;
+    // Fills in the locations in memory of the variables, the jumps and the strings
+    code.resolve(variableTable, jumpTable, strings);
+
+    int diff = heapStart - code.size();
 
     while(diff > 0) {
-      exeEnv += "00";
+      code.emit(0x00);
       diff--;
     }
 
-    exeEnv += stringForHeap;
-  }
-
-  private void dft(List<Node> children, int depth) {
-    depth++;
-    boolean inIf = false;
-    String currentJump = "";
-
-    for (Node child : children) {
-
-      // If a root node
-      if (child.getChildren().size() > 0) {
-        if(!inIf) {
-          List<Node> kids = child.getChildren();
-          if (Pattern.matches("Print.*", child.getVal())) {
-            print(child.getChildren().get(0).getVal().charAt(0), ast.getDepth(child) - 1);
-            return;
-          } else if (Pattern.matches("If.*", child.getVal())) {
-            if (kids.get(1).getVal().equals("==")) {
-              compare(kids.get(0), kids.get(2), true);
-            } else {
-              compare(kids.get(0), kids.get(2), false);
-            }
-            currentJump = ifStatement();
-            inIf = true;
-          } else if(Pattern.matches("While.*", child.getVal())) {
-            whileLoop(kids.get(0), kids.get(2), kids.get(1));
-          }
-
-          dft(child.getChildren(), depth);
+    strings.writeTo(code);
+  }
 
-        } else {
-          dft(child.getChildren(), depth);
-          jumpTable.set(currentJump, exeEnv.length()/2);
-          inIf = false;
+  /**
+   * What is being kept track of for the children of a Node while they are being generated.
+   */
+  private static class Level {
 
-        }
+    private boolean inIf = false;
+    private boolean inElse = false;
+    private String currentJump = "";
+  }
+
+  /**
+   * Hands each Node to the method for its kind, except for the statement right after an if, which
+   * is generated as what the if jumps past.
+   */
+  @Override
+  public Walk visit(Node node) {
+    // If a leaf node
+    if (node.getFirstChild() == null) {
+      return visitLeaf(node);
+    }
+
+    Level level = levels.peek();
+    if (level.inIf) {
+      level.inElse = true;
+      return children();
+    }
+
+    return AstVisitor.super.visit(node);
+  }
+
+  @Override
+  public void leave(Node node) {
+    levels.pop();
+
+    Level level = levels.peek();
+    if (level.inElse) {
+      jumpTable.set(level.currentJump, code.size());
+      level.inIf = false;
+      level.inElse = false;
+    }
+  }
+
+  @Override
+  public Walk visitBlock(Node node) {
+    variableTable.addScope(node.getStartedScope(), node.getScope());
+    return children();
+  }
+
+  @Override
+  public Walk visitAssign(Node node) {
+    if (deadStores.get(node.getIndex())) {
+      deadStoreCount++;
+      return Walk.SKIP_CHILDREN;
+    }
+    return children();
+  }
+
+  @Override
+  public Walk visitVarDecl(Node node) {
+    return children();
+  }
+
+  @Override
+  public Walk visitPrint(Node node) {
+    if (node.getFirstChild() == null) {
+      return Walk.SKIP_CHILDREN;
+    }
+    print(node.getFirstChild().getVal().charAt(0), node.getScope());
+    return Walk.SKIP_SIBLINGS;
+  }
+
+  @Override
+  public Walk visitIf(Node node) {
+    List<Node> kids = node.getChildren();
+    // A condition that is just true or false needs no jump, since its Block always or never runs
+    if (kids.size() == 2) {
+      if (kids.get(0).getVal().equals("false")) {
+        return Walk.SKIP_CHILDREN;
+      }
+      return children();
+    }
+    // Anything else is a comparison, which needs both sides and the Block
+    if (kids.size() < 4) {
+      return Walk.SKIP_CHILDREN;
+    }
 
-        // if a leaf node
+    if (kids.get(1).getVal().equals("==")) {
+      compare(kids.get(0), kids.get(2), true);
+    } else {
+      compare(kids.get(0), kids.get(2), false);
+    }
+
+    Level level = levels.peek();
+    level.currentJump = ifStatement();
+    level.inIf = true;
+    return children();
+  }
+
+  @Override
+  public Walk visitWhile(Node node) {
+    List<Node> kids = node.getChildren();
+    // A condition that is just true or false is compared with itself, unless the loop never runs
+    if (kids.size() == 2) {
+      if (kids.get(0).getVal().equals("false")) {
+        return Walk.SKIP_CHILDREN;
+      }
+      whileLoop(kids.get(0), kids.get(0), null);
+      return children();
+    }
+    if (kids.size() < 4) {
+      return Walk.SKIP_CHILDREN;
+    }
+    whileLoop(kids.get(0), kids.get(2), kids.get(1));
+    return children();
+  }
+
+  @Override
+  public Walk visitLeaf(Node node) {
+    AstKind leafKind = node.getKind();
+    Node parent = node.getParent();
+    if ((leafKind == AstKind.TYPE || leafKind == AstKind.ID) && parent != null
+        && parent.getChildren().size() > 1) {
+      Node varName = parent.getChildren().get(1);
+      AstKind valueKind = varName.getKind();
+      // if initializing an integer
+      if (leafKind == AstKind.TYPE) {
+        char varChar = varName.getVal().charAt(0);
+        initializeVar(varChar, varName.getScope());
+        return Walk.SKIP_SIBLINGS;
+        // if assigning a variable
       } else {
-        if (Pattern.matches("int|string|boolean|[a-z]$", child.getVal())) {
-          Node varName = child.getParent().getChildren().get(1);
-          // if initializing an integer
-          if (Pattern.matches("int|string|boolean", child.getVal())) {
-            char varChar = varName.getVal().charAt(0);
-            initializeVar(varChar, ast.getDepth(varName) - 2);
-            return;
-            // if assigning a variable
-          } else if (Pattern.matches("[a-z]", child.getVal())) {
-            char thisVar = child.getVal().charAt(0);
-            int thisDepth = ast.getDepth(child)-2;
-
-            // assigning an integer
-            if (Pattern.matches("\\d+", varName.getVal())) {
-              assignInt(thisVar, Integer.parseInt(varName.getVal()), thisDepth);
-              // assigning a string
-            } else if (Pattern.matches("\\[[a-z ]*]", varName.getVal())) {
-              assignString(thisVar, varName.getVal(), thisDepth);
-              // assigning a boolean
-            } else if (Pattern.matches("true|false", varName.getVal())) {
-              assignBoolean(thisVar, Boolean.parseBoolean(varName.getVal()), thisDepth);
-              // assigning a variable to another variable
-            } else if (Pattern.matches("[a-z]", varName.getVal())) {
-              assignVar(thisVar, thisDepth, varName.getVal().charAt(0), ast.getDepth(varName));
-            }
-          }
+        char thisVar = node.getVal().charAt(0);
+        int thisScope = node.getScope();
+
+        // assigning an integer
+        if (valueKind == AstKind.INT) {
+          assignInt(thisVar, Integer.parseInt(varName.getVal()), thisScope);
+          // assigning a string
+        } else if (valueKind == AstKind.STRING) {
+          assignString(thisVar, varName.getVal(), thisScope);
+          // assigning a boolean
+        } else if (valueKind == AstKind.BOOL) {
+          assignBoolean(thisVar, Boolean.parseBoolean(varName.getVal()), thisScope);
+          // assigning a variable to another variable
+        } else if (valueKind == AstKind.ID) {
+          assignVar(thisVar, thisScope, varName.getVal().charAt(0), varName.getScope());
         }
       }
     }
+    return Walk.SKIP_CHILDREN;
+  }
+
+  /**
+   * Goes on to generate the children of the current Node.
+   */
+  private Walk children() {
+    levels.push(new Level());
+    return Walk.CHILDREN;
   }
 
   /**
@@ -152,11 +297,9 @@ public class CodeGeneration {
    * @param var The variable in the source code.
    */
   private void initializeVar(char var, int scope) {
-    String initInt = "A9008D";
     variableTable.addVar(var, scope);
-    initInt += variableTable.getTemp(var, scope);
-    exeEnv += initInt;
-    bytesUsed += initInt.length() / 2;
+    code.emit(0xA9, 0x00, 0x8D);
+    code.emitVariable(variableTable.getId(var, scope));
   }
 
   /**
@@ -168,12 +311,8 @@ public class CodeGeneration {
    * @param val The value that var is to be assigned to.
    */
   private void assignInt(char var, int val, int scope) {
-    String assignInt = "A9";
-    assignInt += String.format("%02X", val);
-    assignInt += "8D";
-    assignInt += variableTable.getTemp(var, scope);
-    exeEnv += assignInt;
-    bytesUsed += assignInt.length() / 2;
+    code.emit(0xA9, val, 0x8D);
+    code.emitVariable(variableTable.getId(var, scope));
   }
 
   /**
@@ -185,46 +324,31 @@ public class CodeGeneration {
   private void assignBoolean(char var, boolean val, int scope) {
     int boolState = 0;
 
-    String assignInt = "A9";
     if (val) {
       boolState = 1;
     }
-    assignInt += String.format("%02X", boolState);
-    assignInt += "8D";
-    assignInt += variableTable.getTemp(var, scope);
-    exeEnv += assignInt;
-    bytesUsed += assignInt.length() / 2;
+    code.emit(0xA9, boolState, 0x8D);
+    code.emitVariable(variableTable.getId(var, scope));
   }
 
   /**
-   * Assigns a string val to the end of the heap space located at the end of the code.
+   * Assigns a variable var from the source code the address of a string val in the heap.
    *
    * @param var The name of the variable that is being assigned in the source code.
    * @param val The value of the string the variable is to be assigned to.
    */
   private void assignString(char var, String val, int scope) {
-    String assignStr = "A9";
-    assignStr += String.format("%02X", storeString(val));
-    assignStr += "8D";
-    assignStr += variableTable.getTemp(var, scope);
-    exeEnv += assignStr;
-    bytesUsed += assignStr.length() / 2;
+    code.emit(0xA9);
+    code.emitString(strings.add(stringValue(val)));
+    code.emit(0x8D);
+    code.emitVariable(variableTable.getId(var, scope));
   }
 
   /**
-   * Prepares a string to be stored in heap.
+   * Gets the characters of a string from the value of its Node, which has brackets around them.
    */
-  private int storeString(String toBeStored) {
-    String addToHeap = "";
-    toBeStored = toBeStored.substring(1,toBeStored.length()-1);
-    for (char c : toBeStored.toCharArray()) {
-      addToHeap += String.format("%02X", (int) c);
-      currentEndOfHeap--;
-    }
-    addToHeap += "00";
-    bytesUsed++;
-    stringForHeap += addToHeap;
-    return --currentEndOfHeap;
+  private String stringValue(String val) {
+    return val.substring(1, val.length() - 1);
   }
 
   /**
@@ -236,12 +360,10 @@ public class CodeGeneration {
    * @param var2 The variable who's value will be copied.
    */
   private void assignVar(char var1, int scope1, char var2, int scope2) {
-    String assignVar = "AD";
-    assignVar += variableTable.getTemp(var2, scope2);
-    assignVar += "8D";
-    assignVar += variableTable.getTemp(var1, scope1);
-    exeEnv += assignVar;
-    bytesUsed += assignVar.length() / 2;
+    code.emit(0xAD);
+    code.emitVariable(variableTable.getId(var2, scope2));
+    code.emit(0x8D);
+    code.emitVariable(variableTable.getId(var1, scope1));
   }
 
   /**
@@ -252,11 +374,9 @@ public class CodeGeneration {
    * @param var The variable to have it's value printed.
    */
   private void print(char var, int scope) {
-    String toPrint = "AC";
-    toPrint += variableTable.getTemp(var, scope);
-    toPrint += "A201FF";
-    exeEnv += toPrint;
-    bytesUsed += toPrint.length() / 2;
+    code.emit(0xAC);
+    code.emitVariable(variableTable.getId(var, scope));
+    code.emit(0xA2, 0x01, 0xFF);
   }
 
   /**
@@ -266,72 +386,104 @@ public class CodeGeneration {
    * @parm equal
    */
   private void compare(Node left, Node right, Boolean equal){
-    String compareEqual = "";
-    boolean firstPass = true;
+    // Two strings are known to be the same or not already, so that is compared instead
+    if (isComparableString(left) && isComparableString(right)) {
+      initializeVar('B', left.getScope());
+      code.emit(0xA2, sameStrings(left, right) ? 0x00 : 0x01, 0xEC);
+      code.emitVariable(variableTable.getId('B', left.getScope()));
+      code.emit(0xD0);
+      if(!equal) {
+        code.emit(0x20);
+      }
+      return;
+    }
+
     Node[] nodes = {left, right};
     char c = 'A';
 
+    // Strings are put in variables of their own before anything is compared
+    for(Node n : nodes) {
+      c++;
+      if (isComparableString(n)) {
+        initializeVar(c, n.getScope());
+        assignString(c, n.getVal(), n.getScope());
+      }
+    }
+
+    boolean firstPass = true;
+    c = 'A';
+
     for(Node n : nodes) {
       c++;
+      AstKind kind = n.getKind();
 
       // Compare integers
-      if (Pattern.matches("\\d+", n.getVal())) {
+      if (kind == AstKind.INT) {
         if(firstPass) {
-          compareEqual += "A2";
+          code.emit(0xA2);
         }
-        compareEqual += String.format("%02X", Integer.parseInt(n.getVal()));
+        code.emit(Integer.parseInt(n.getVal()));
 
         // Compare strings
-      } else if (Pattern.matches("\\[[a-z]*]", n.getVal())) {
+      } else if (isComparableString(n)) {
         if(firstPass) {
-          compareEqual += "AE";
+          code.emit(0xAE);
         }
-        initializeVar(c, ast.getDepth(n)-1);
-        assignString(c, n.getVal(), ast.getDepth(n)-1);
-        compareEqual += variableTable.getTemp(c, ast.getDepth(n)-1);
+        code.emitVariable(variableTable.getId(c, n.getScope()));
 
         // Compare booleans
-      } else if (Pattern.matches("true|false", n.getVal())) {
+      } else if (kind == AstKind.BOOL) {
         if(firstPass) {
-          compareEqual += "A2";
+          code.emit(0xA2);
         }
         int bool = 0;
         if(n.getVal().equals("true")) {
           bool = 1;
         }
 
-        compareEqual += String.format("%02X", bool);
+        code.emit(bool);
 
         // Compare variables
-      } else if (Pattern.matches("[a-z]", n.getVal())) {
+      } else if (kind == AstKind.ID) {
         if(firstPass) {
-          compareEqual += "AE";
+          code.emit(0xAE);
         }
-        compareEqual += variableTable.getTemp(n.getVal().charAt(0), ast.getDepth(n));
+        code.emitVariable(variableTable.getId(n.getVal().charAt(0), n.getScope()));
       }
       if(firstPass) {
-        compareEqual += "EC";
+        code.emit(0xEC);
       }
       firstPass = false;
     }
-    compareEqual += "D0";
+    code.emit(0xD0);
     if(!equal) {
-      compareEqual += "20";
+      code.emit(0x20);
     }
+  }
 
-    bytesUsed += compareEqual.length() / 2;
-    exeEnv += compareEqual;
+  /**
+   * Checks if a Node is a string that can be compared, which has only ever been one without any
+   * spaces in it.
+   */
+  private boolean isComparableString(Node n) {
+    return n.getKind() == AstKind.STRING && n.getVal().indexOf(' ') < 0;
+  }
+
+  /**
+   * Checks if two strings have the same characters.
+   */
+  private boolean sameStrings(Node left, Node right) {
+    return stringValue(left.getVal()).equals(stringValue(right.getVal()));
   }
 
   /**
    *
    */
   private String ifStatement() {
-    String ifString = "";
-    String thisJump = "J" + jumpTable.getJumps();
+    int jump = jumpTable.getJumps();
+    String thisJump = JumpTable.jumpName(jump);
     jumpTable.add(thisJump);
-    ifString += thisJump;
-    exeEnv += ifString;
+    code.emitJump(jump);
 
     return thisJump;
   }
@@ -343,67 +495,84 @@ public class CodeGeneration {
    * @param comparator
    */
   private void whileLoop(Node arg1, Node arg2, Node comparator) {
-    String loopStr = "";
     Node[] nodes = {arg1, arg2};
-    List<String> temps = new ArrayList<>();
+    int[] loads = new int[2];
+    int[] temps = new int[2];
+    int[] constants = {-1, -1};
     char tempVar = 'A';
 
-    for(Node n : nodes) {
+    // Two strings are known to be the same or not already, so that is compared instead
+    if (isComparableString(arg1) && isComparableString(arg2)) {
+      constants[0] = 0x00;
+      constants[1] = sameStrings(arg1, arg2) ? 0x00 : 0x01;
+    }
+
+    // Sets aside the variables the loop compares, which for a string also means storing it
+    for(int i = 0; i < nodes.length; i++) {
+      Node n = nodes[i];
+      AstKind kind = n.getKind();
+      loads[i] = -1;
+
+      if (kind != AstKind.INT && kind != AstKind.BOOL && constants[i] < 0) {
+        // If thing is a string (aka a mistake)
+        if(isComparableString(n)) {
+          char tempVar2 = (char)(tempVar + 1);
+
+          initializeVar(tempVar, n.getScope());
+          assignString(tempVar, n.getVal(), n.getScope());
+          loads[i] = variableTable.getId(tempVar, n.getScope());
+          variableTable.addVar(tempVar2, n.getScope());
+          temps[i] = variableTable.getId(tempVar2, n.getScope());
+          tempVar++;
+          continue;
+        }
+        loads[i] = variableTable.getId(n.getVal().charAt(0), n.getScope());
+      }
+      variableTable.addVar(tempVar, n.getScope());
+      temps[i] = variableTable.getId(tempVar, n.getScope());
+      tempVar++;
+    }
+
+    for(int i = 0; i < nodes.length; i++) {
+      Node n = nodes[i];
       // If thing is a terminal (A9)
-      if (Pattern.matches("(\\d+)|(true|false)", n.getVal())) {
-        loopStr += "A9";
+      AstKind kind = n.getKind();
+      if (constants[i] >= 0) {
+        code.emit(0xA9, constants[i]);
+      } else if (kind == AstKind.INT || kind == AstKind.BOOL) {
+        code.emit(0xA9);
         // bool true
         if (n.getVal().equals("true")) {
-          loopStr += "01";
+          code.emit(0x01);
           // bool false
         } else if (n.getVal().equals("false")) {
-          loopStr += "00";
+          code.emit(0x00);
           // int
         } else {
-          loopStr += String.format("%02X", Integer.parseInt(n.getVal()));
+          code.emit(Integer.parseInt(n.getVal()));
         }
-        loopStr += "8D";
-        variableTable.addVar(tempVar, ast.getDepth(n));
-        String temp = variableTable.getTemp(tempVar, ast.getDepth(n));
-        temps.add(temp);
-        loopStr += temp;
       } else {
-        loopStr += "AD";
-        // If thing is a string (aka a mistake)
-        if(Pattern.matches("\\[[a-z]*]", n.getVal())) {
-          char tempVar2 = (char)(tempVar + 1);
-
-          initializeVar(tempVar, ast.getDepth(n));
-          assignString(tempVar, n.getVal(), ast.getDepth(n));
-          loopStr += variableTable.getTemp(tempVar, ast.getDepth(n));
-          loopStr += "8D";
-          variableTable.addVar(tempVar2, ast.getDepth(n));
-          String temp = variableTable.getTemp(tempVar2, ast.getDepth(n));
-          temps.add(temp);
-          loopStr += temp;
-        } else {
-          loopStr += variableTable.getTemp(n.getVal().charAt(0), ast.getDepth(n));
-          loopStr += "8D";
-          variableTable.addVar(tempVar, ast.getDepth(n));
-          String temp = variableTable.getTemp(tempVar, ast.getDepth(n));
-          temps.add(temp);
-          loopStr += temp;
-        }
+        code.emit(0xAD);
+        code.emitVariable(loads[i]);
       }
-      tempVar++;
+      code.emit(0x8D);
+      code.emitVariable(temps[i]);
     }
-    int returnTo = (loopStr.length() + exeEnv.length()) / 2;
-    loopStr += "AE" + temps.get(0) + "EC" + temps.get(1);
-    loopStr += "A900D0";
-    loopStr += String.format("%02X", returnTo);
-    loopStr += "A901";
-    int returnTwo = (loopStr.length() + exeEnv.length()) / 2;
-    loopStr += "A2008D" + temps.get(0);
-    loopStr += "EC" + temps.get(0);
-    loopStr += "D0" + returnTwo;
-
-    bytesUsed += loopStr.length() / 2;
-    exeEnv += loopStr;
+    int returnTo = code.size();
+    code.emit(0xAE);
+    code.emitVariable(temps[0]);
+    code.emit(0xEC);
+    code.emitVariable(temps[1]);
+    code.emit(0xA9, 0x00, 0xD0);
+    code.emitBranch(returnTo);
+    code.emit(0xA9, 0x01);
+    int returnTwo = code.size();
+    code.emit(0xA2, 0x00, 0x8D);
+    code.emitVariable(temps[0]);
+    code.emit(0xEC);
+    code.emitVariable(temps[0]);
+    code.emit(0xD0);
+    code.emitBranch(returnTwo);
   }
 
   /**
@@ -412,21 +581,16 @@ public class CodeGeneration {
    * @return The formatted String.
    */
   public String toString() {
-    String toReturn = "";
-    String remainder = exeEnv;
-    int count = 0;
-
-    while (remainder.length() >= 2) {
-      if (count >= 8) {
-        toReturn += "\n";
-        count = 0;
-      }
-      toReturn += remainder.substring(0, 2) + " ";
-      remainder = remainder.substring(2);
-      count++;
-    }
+    return code.toString();
+  }
 
-    return toReturn;
+  /**
+   * Checks if the program fits in memory.
+   *
+   * @return True if the code, the variables and the strings all fit, false otherwise.
+   */
+  public boolean success() {
+    return bytesUsed <= MEMORY_SIZE;
   }
 
   public JumpTable getJumpTable() {
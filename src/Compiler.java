@@ -1,11 +1,25 @@
 import java.util.ArrayList;
-import java.util.Collections;
 
 public class Compiler {
 
-  public Compiler(String toCompile, boolean verbose) {
+  /**
+   * Compiles every program in a String.
+   *
+   * @param toCompile The programs to be compiled.
+   * @param verbose The boolean value that determines if verbose mode is on.
+   * @param printCst The boolean value that determines if the CST is built and printed. The Parser
+   * only recognizes the programs without it.
+   * @param parallel The boolean value that determines if large Blocks are semantically analyzed in
+   * parallel with the rest of their program.
+   * @param checkOnly The boolean value that determines if the programs are only lexed and parsed,
+   * to check that they are syntactically correct. Nothing follows along with the Parser then, so it
+   * builds no AST, and nothing after it is run.
+   */
+  public Compiler(String toCompile, boolean verbose, boolean printCst, boolean parallel,
+      boolean checkOnly) {
     ArrayList<String> programs = breakIntoPrograms(toCompile);
     int iter = 1;
+    int passed = 0;
 
     System.out.print("DEBUG Verbose mode is ");
     if (verbose) {
@@ -16,19 +30,29 @@ public class Compiler {
 
     for (String program : programs) {
       Lexer lex = new Lexer(program, iter, verbose);
-      ArrayList<Token> tokenList = lex.getTokenList();
-      if (lex.success()) {
-        ArrayList<Token> parseTokens = (ArrayList<Token>) tokenList.clone();
-        Parser parse = new Parser(iter, parseTokens, verbose);
+      TokenBuffer tokens = lex.getTokens();
+      if (lex.success() && checkOnly) {
+        Parser parse = new Parser(iter, tokens, verbose, printCst);
         if (parse.success()) {
-          parse.printTree();
-          ArrayList<Token> analysisTokens = (ArrayList<Token>) tokenList.clone();
-          SemanticAnalyzer analyzer = new SemanticAnalyzer(iter, analysisTokens, verbose);
+          passed++;
+          if (printCst) {
+            parse.printTree();
+          }
+        }
+      } else if (lex.success()) {
+        SemanticAnalyzer analyzer = new SemanticAnalyzer(iter, verbose, null, parallel);
+        Parser parse = new Parser(iter, tokens, verbose, printCst, analyzer);
+        if (parse.success()) {
+          if (printCst) {
+            parse.printTree();
+          }
+          analyzer.printAnalysis();
           analyzer.printTree();
           if (analyzer.success()) {
             analyzer.printTable();
+            new ConstantFolder(analyzer.getTree(), iter, analyzer.getDefUse());
             CodeGeneration codeGen = new CodeGeneration(analyzer.getTree(), iter,
-                analyzer.getSymbols());
+                analyzer.getSymbols(), analyzer.getDefUse());
             codeGen.printTables();
           }
         }
@@ -36,6 +60,23 @@ public class Compiler {
 
       iter++;
     }
+
+    if (checkOnly) {
+      System.out.println("\nINFO Compiler - " + passed + " of " + programs.size()
+          + " program(s) lexed and parsed successfully");
+    }
+  }
+
+  public Compiler(String toCompile, boolean verbose, boolean printCst, boolean parallel) {
+    this(toCompile, verbose, printCst, parallel, false);
+  }
+
+  public Compiler(String toCompile, boolean verbose, boolean printCst) {
+    this(toCompile, verbose, printCst, false);
+  }
+
+  public Compiler(String toCompile, boolean verbose) {
+    this(toCompile, verbose, true);
   }
 
   public Compiler(String toCompile) {
@@ -50,14 +91,18 @@ public class Compiler {
    */
   private ArrayList<String> breakIntoPrograms(String toBreak) {
     ArrayList<String> programs = new ArrayList<>();
+    int start = 0;
+    int end = toBreak.indexOf('$');
 
-    if (toBreak.contains("$")) {
-      while (toBreak.contains("$")) {
-        programs.add(toBreak.substring(0, toBreak.indexOf("$") + 1));
-        toBreak = toBreak.substring(toBreak.indexOf("$") + 1);
+    if (end >= 0) {
+      while (end >= 0) {
+        programs.add(toBreak.substring(start, end + 1));
+        start = end + 1;
+        end = toBreak.indexOf('$', start);
       }
-      if (!toBreak.equals("") && !toBreak.equals("\n")) {
-        programs.add(toBreak);
+      String rest = toBreak.substring(start);
+      if (!rest.equals("") && !rest.equals("\n")) {
+        programs.add(rest);
       }
     } else {
       programs.add(toBreak);
@@ -1,13 +1,26 @@
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.PrintStream;
 import java.util.*;
 
 public class CompilerTester {
 
   public static void main(String[] args) {
+    // Only checks that the programs on stdin lex and parse, for going through a lot of them
+    if (args.length > 0 && args[0].equals("-check")) {
+      stdInRead(false, true);
+      return;
+    }
+
+    recognizerTest();
+    parallelTest();
+    foldTest();
+    deadStoreTest();
+    stringPoolTest();
     individualTests();
 //    readFromFileTest();
-//    stdInRead(true);
+//    stdInRead(true, false);
   }
 
   /**
@@ -85,11 +98,167 @@ public class CompilerTester {
 //    System.out.println(v.toString());
   }
 
+  /**
+   * Parses programs with nothing following along, which is how the Compiler only checks programs,
+   * to make sure the Parser still tells good programs from bad ones when it only recognizes them.
+   */
+  private static void recognizerTest() {
+    String[] good = {"{}$", "{ int a a = 1+2 if (a == 3) { print(a) } }$",
+        "{ string s s = \"ab\" while (s != \"cd\") { s = \"cd\" } }$"};
+    String[] bad = {"{ print(a }$", "x = }$", "{{a= ((\"acb\"==4+y)!=z)==}$"};
+
+    for (String program : good) {
+      check("recognizes " + program, recognize(program));
+    }
+    for (String program : bad) {
+      check("rejects " + program, !recognize(program));
+    }
+
+    PrintStream out = System.out;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(printed));
+    new Compiler(String.join("", good) + String.join("", bad), false, false, false, true);
+    System.setOut(out);
+    check("only checks programs in the Compiler", printed.toString()
+        .contains("INFO Compiler - 3 of 6 program(s) lexed and parsed successfully")
+        && !printed.toString().contains("Semantic Analysis"));
+  }
+
+  /**
+   * Lexes and parses a program without building a CST or anything else.
+   *
+   * @return True if the program parsed, false otherwise.
+   */
+  private static boolean recognize(String program) {
+    Lexer lex = new Lexer(program, 1, false);
+    return lex.success() && new Parser(1, lex.getTokens(), false, false).success();
+  }
+
+  /**
+   * Analyzes programs with Blocks big enough to be analyzed on their own both one at a time and in
+   * parallel, to make sure both ways find the same warnings.
+   */
+  private static void parallelTest() {
+    String big = String.join(" ", Collections.nCopies(1500, "f = 1"));
+    String[] programs = {
+        "{ int f int g g = 2 { " + big + " } if true { print(g) } print(f) }$",
+        "{ int f int g if true { { " + big + " } } print(f) print(g) }$",
+        "{ int f { " + big + " print(f) } { " + big + " } while false { { " + big
+            + " } print(f) } }$",
+        "{ int f int g { " + big + " } print(f) print(g) while (g == 1) { { int f " + big
+            + " } print(f) } print(g) }$"};
+
+    for (int i = 0; i < programs.length; i++) {
+      String sequential = analyze(programs[i], false);
+      check("same warnings in parallel for program " + (i + 1),
+          sequential.equals(analyze(programs[i], true)));
+    }
+  }
+
+  /**
+   * Lexes, parses and semantically analyzes a program.
+   *
+   * @return What the analysis printed.
+   */
+  private static String analyze(String program, boolean parallel) {
+    Lexer lex = new Lexer(program, 1, false);
+    SemanticAnalyzer analyzer = new SemanticAnalyzer(1, false, null, parallel);
+    new Parser(1, lex.getTokens(), false, false, analyzer);
+
+    PrintStream out = System.out;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(printed));
+    analyzer.printAnalysis();
+    System.setOut(out);
+    return printed.toString();
+  }
+
+  /**
+   * Compiles programs with an operand left out of a comparison, which the grammar lets through, to
+   * make sure Constant Folding leaves them alone instead of throwing.
+   */
+  private static void foldTest() {
+    String[] programs = {"{ int a a = 1 if (a == ) { print(a) } }$",
+        "{ boolean b boolean y b = true y = false while (((b==y)==)==y) { print(b) } }$",
+        "{ boolean b b = true while ((1 == ) == (2 == 2)) { print(b) } }$",
+        "{ print(1 + (2 == 2)) }$",
+        "{ print((\"a\" == 1)) }$",
+        "{ int a a = 1 print((1 + 2 == 1 + a)) }$"};
+    int[] folded = {0, 0, 0, 0, 0, 1};
+
+    PrintStream out = System.out;
+    for (int i = 0; i < programs.length; i++) {
+      ByteArrayOutputStream captured = new ByteArrayOutputStream();
+      boolean passed = true;
+      System.setOut(new PrintStream(captured));
+      try {
+        new Compiler(programs[i], false);
+      } catch (RuntimeException e) {
+        passed = false;
+      }
+      System.setOut(out);
+      check("folds " + programs[i], passed && captured.toString().contains(
+          "Folded " + folded[i] + " expression(s)"));
+    }
+  }
+
+  private static void deadStoreTest() {
+    String[] programs = {"{ int a int b a = 1 b = 2 print(a) }$",
+        "{ int a a = 1 while (a != 3) { a = 1 + a } }$",
+        "{ int a a = 1 { int a a = 2 } print(a) }$"};
+    int[] leftOut = {1, 0, 1};
+
+    PrintStream out = System.out;
+    for (int i = 0; i < programs.length; i++) {
+      ByteArrayOutputStream captured = new ByteArrayOutputStream();
+      System.setOut(new PrintStream(captured));
+      new Compiler(programs[i], false);
+      System.setOut(out);
+      check("leaves out dead stores " + programs[i], captured.toString().contains(
+          "Left out " + leftOut[i] + " assignment(s)"));
+    }
+  }
+
+  private static void stringPoolTest() {
+    StringPool pool = new StringPool();
+    int abc = pool.add("abc");
+    int c = pool.add("c");
+    int xbc = pool.add("xbc");
+    int bc = pool.add("bc");
+    pool.add("abc");
+    check("shares the ends of strings", pool.size() == 8 && pool.getAddress(c) == 2
+        && pool.getAddress(bc) == 1 && pool.getAddress(xbc) == 4 && pool.getAddress(abc) == 0);
+
+    StringBuilder program = new StringBuilder("{ string s s = \"");
+    for (int i = 0; i < 100000; i++) {
+      program.append('a');
+    }
+    program.append("\" print(s) }$");
+
+    PrintStream out = System.out;
+    ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(captured));
+    boolean passed = true;
+    try {
+      // Without the CST, which has a CharList for every character
+      new Compiler(program.toString(), false, false, false);
+    } catch (RuntimeException | OutOfMemoryError e) {
+      passed = false;
+    }
+    System.setOut(out);
+    check("reports a long string that does not fit", passed && captured.toString().contains(
+        "needs 100014 bytes of memory"));
+  }
+
+  private static void check(String name, boolean passed) {
+    System.out.println((passed ? "PASS " : "FAIL ") + name);
+  }
+
   /**
    * You can use this method to read stdin to the compiler. Debug is true for debug mode, false
-   * otherwise.
+   * otherwise. CheckOnly is true to only lex and parse the programs.
    */
-  private static void stdInRead(boolean debug) {
+  private static void stdInRead(boolean debug, boolean checkOnly) {
     Scanner scanner = new Scanner(System.in);
 
     String file = "";
@@ -98,7 +267,7 @@ public class CompilerTester {
       file += scanner.nextLine() + "\n";
     }
 
-    Compiler comp = new Compiler(file, debug);
+    Compiler comp = new Compiler(file, debug, !checkOnly, false, checkOnly);
   }
 
 }
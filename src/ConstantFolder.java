@@ -0,0 +1,280 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Constant Folding for the SAD Compiler for Alan Labouseur's compilers class. It works out every
+ * part of an expression that is already known while compiling, such as 1+2+3 or (true == (1 != 2)),
+ * and puts a single leaf with its value in the AST in place of it, before Code Generation.
+ *
+ * The leaves of an expression are laid out flat under their statement, so the parentheses are only
+ * known from how many boolean expressions each leaf is inside of: the operator of a boolean
+ * expression is the one in it that is inside of the fewest. Integers are added the way the machine
+ * adds them, wrapping around past 255.
+ *
+ * @author Tim Polizzi
+ */
+public class ConstantFolder implements AstVisitor {
+
+  private SyntaxTree ast;
+  private int folded;
+  private StringBuilder log;
+
+  // The Nodes that a folded leaf was put in place of
+  private BitSet replaced;
+
+  /**
+   * Folds the constant expressions of an AST that has been semantically analyzed, and prints what
+   * was folded.
+   *
+   * @param ast The AST, which is changed in place.
+   * @param programNo The numerical identifier of which program is being folded.
+   * @param defUse Where each variable is defined and read in the AST, which has anything at the
+   * Nodes that were folded away left out of it, or null if there is none.
+   */
+  public ConstantFolder(SyntaxTree ast, int programNo, DefUseIndex defUse) {
+    this.ast = ast;
+    folded = 0;
+    log = new StringBuilder();
+    replaced = new BitSet();
+
+    System.out.println("\nINFO Constant Folding - Folding program " + programNo + "...");
+
+    ast.walk(this);
+    if (defUse != null) {
+      defUse.removeAll(replaced);
+    }
+
+    System.out.print(log);
+    System.out.println("INFO Constant Folding - Folded " + folded + " expression(s)");
+  }
+
+  /**
+   * Folds the constant expressions of an AST that has been semantically analyzed, and prints what
+   * was folded.
+   *
+   * @param ast The AST, which is changed in place.
+   * @param programNo The numerical identifier of which program is being folded.
+   */
+  public ConstantFolder(SyntaxTree ast, int programNo) {
+    this(ast, programNo, null);
+  }
+
+  @Override
+  public Walk visitAssign(Node node) {
+    List<Node> kids = new ArrayList<>(node.getChildren());
+    if (!kids.isEmpty()) {
+      fold(node, kids.subList(1, kids.size()));
+    }
+    return Walk.SKIP_CHILDREN;
+  }
+
+  @Override
+  public Walk visitPrint(Node node) {
+    fold(node, new ArrayList<>(node.getChildren()));
+    return Walk.SKIP_CHILDREN;
+  }
+
+  @Override
+  public Walk visitVarDecl(Node node) {
+    return Walk.SKIP_CHILDREN;
+  }
+
+  @Override
+  public Walk visitIf(Node node) {
+    return condition(node);
+  }
+
+  @Override
+  public Walk visitWhile(Node node) {
+    return condition(node);
+  }
+
+  @Override
+  public Walk visitLeaf(Node node) {
+    return Walk.SKIP_CHILDREN;
+  }
+
+  /**
+   * Folds the condition of an if or a while, which is everything before its Block, and goes on to
+   * the Block.
+   */
+  private Walk condition(Node node) {
+    List<Node> kids = new ArrayList<>(node.getChildren());
+    if (!kids.isEmpty()) {
+      fold(node, kids.subList(0, kids.size() - 1));
+    }
+    return Walk.CHILDREN;
+  }
+
+  /**
+   * Folds an expression, all of it if it is constant and as much of it as is otherwise. An
+   * expression whose types do not match, such as 1 + (2 == 2), is left the way it is, since what it
+   * would fold into means nothing.
+   *
+   * @param statement The statement the expression belongs to, which has the type of it.
+   * @param leaves The leaves of the expression, in order.
+   */
+  private void fold(Node statement, List<Node> leaves) {
+    if (leaves.isEmpty() || statement.getType() == Type.ERROR) {
+      return;
+    }
+
+    Object value = evaluate(leaves, 0, leaves.size() - 1);
+    if (value != null) {
+      replace(leaves, 0, leaves.size() - 1, value);
+    }
+  }
+
+  /**
+   * Works out the value of some of the leaves of an expression, folding the parts of them that are
+   * constant if all of them are not.
+   *
+   * @param leaves The leaves of the expression.
+   * @param first The first of the leaves to work out.
+   * @param last The last of the leaves to work out.
+   * @return An Integer, a Boolean or the value of a string leaf, or null if it is not known while
+   * compiling or there are no leaves, as with an operand left out after a boolean operator.
+   */
+  private Object evaluate(List<Node> leaves, int first, int last) {
+    int op = operator(leaves, first, last);
+
+    if (op < 0) {
+      return sum(leaves, first, last);
+    }
+
+    Object left = evaluate(leaves, first, op - 1);
+    Object right = evaluate(leaves, op + 1, last);
+
+    if (left != null && right != null) {
+      if (left.getClass() != right.getClass()) {
+        return null;
+      }
+      return left.equals(right) == leaves.get(op).getVal().equals("==");
+    }
+    if (left != null) {
+      replace(leaves, first, op - 1, left);
+    }
+    if (right != null) {
+      replace(leaves, op + 1, last, right);
+    }
+    return null;
+  }
+
+  /**
+   * Finds the operator of the outermost boolean expression in some of the leaves of an expression.
+   *
+   * @return The index of the operator in leaves, or -1 if there is no boolean expression.
+   */
+  private int operator(List<Node> leaves, int first, int last) {
+    int op = -1;
+    for (int i = first; i <= last; i++) {
+      Node n = leaves.get(i);
+      if (n.getKind() == AstKind.BOOL_OP
+          && (op < 0 || n.getNesting() < leaves.get(op).getNesting())) {
+        op = i;
+      }
+    }
+    return op;
+  }
+
+  /**
+   * Works out the value of a single operand, or of an integer expression, which is integers added
+   * together and possibly a variable at the end.
+   *
+   * IntExpr -> digit intop Expr
+   */
+  private Object sum(List<Node> leaves, int first, int last) {
+    if (first > last) {
+      return null;
+    }
+    if (first == last) {
+      Node n = leaves.get(first);
+
+      switch (n.getKind()) {
+        case INT:
+          return Integer.parseInt(n.getVal());
+        case BOOL:
+          return Boolean.parseBoolean(n.getVal());
+        case STRING:
+          return n.getVal();
+        default:
+          return null;
+      }
+    }
+
+    if (leaves.get(last).getType() != Type.INT) {
+      return null;
+    }
+
+    int total = 0;
+    int end = first;
+    while (end <= last && leaves.get(end).getKind() == AstKind.INT) {
+      total = (total + Integer.parseInt(leaves.get(end).getVal())) & 0xFF;
+      end += 2;
+    }
+
+    if (end > last) {
+      return total;
+    }
+
+    // Only the integers before the variable are known
+    if (end - 2 > first) {
+      replace(leaves, first, end - 2, total);
+    }
+    return null;
+  }
+
+  /**
+   * Writes out some of the leaves of an expression the way they were in the program, with the
+   * parentheses put back in.
+   */
+  private String describe(List<Node> leaves, int first, int last) {
+    int op = operator(leaves, first, last);
+
+    if (op >= 0) {
+      return "(" + describe(leaves, first, op - 1) + " " + leaves.get(op).getVal() + " "
+          + describe(leaves, op + 1, last) + ")";
+    }
+
+    StringBuilder toReturn = new StringBuilder();
+    for (int i = first; i <= last; i++) {
+      Node n = leaves.get(i);
+      if (n.getKind() == AstKind.STRING) {
+        String val = n.getVal();
+        toReturn.append('"').append(val, 1, val.length() - 1).append('"');
+      } else {
+        toReturn.append(n.getVal());
+      }
+    }
+    return toReturn.toString();
+  }
+
+  /**
+   * Puts a leaf with a value in place of some of the leaves of an expression, if there is more than
+   * one of them.
+   */
+  private void replace(List<Node> leaves, int first, int last, Object value) {
+    if (first >= last) {
+      return;
+    }
+
+    String from = describe(leaves, first, last);
+    for (int i = first; i <= last; i++) {
+      replaced.set(leaves.get(i).getIndex());
+    }
+
+    Node leaf;
+    if (value instanceof Integer) {
+      leaf = ast.replace(leaves.get(first), leaves.get(last), AstKind.INT, value.toString(),
+          Type.INT);
+    } else {
+      leaf = ast.replace(leaves.get(first), leaves.get(last), AstKind.BOOL, value.toString(),
+          Type.BOOLEAN);
+    }
+
+    folded++;
+    log.append("INFO Constant Folding - Folded ").append(from).append(" into ")
+        .append(leaf.getVal()).append("\n");
+  }
+}
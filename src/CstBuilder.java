@@ -0,0 +1,53 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Builds the CST for the Parser, with a tree for each nonterminal and a leaf for each token.
+ *
+ * @author Tim Polizzi
+ */
+public class CstBuilder implements ParseListener {
+
+  private Deque<SyntaxTree> open;
+  private SyntaxTree tree;
+
+  /**
+   * Creates a new CstBuilder with nothing built yet.
+   */
+  public CstBuilder() {
+    open = new ArrayDeque<>();
+  }
+
+  @Override
+  public void enter(NonTerminal nonTerminal) {
+    SyntaxTree started;
+
+    // Started inside the tree it belongs to, so it is never copied
+    if (open.isEmpty()) {
+      started = new SyntaxTree(nonTerminal.getLabel());
+      tree = started;
+    } else {
+      started = open.peek().addTree(nonTerminal.getLabel());
+    }
+    open.push(started);
+  }
+
+  @Override
+  public void terminal(Token token) {
+    open.peek().add(token);
+  }
+
+  @Override
+  public void exit(NonTerminal nonTerminal) {
+    open.pop();
+  }
+
+  /**
+   * Get the CST.
+   *
+   * @return tree, the CST, or null if nothing has been parsed.
+   */
+  public SyntaxTree getTree() {
+    return tree;
+  }
+}
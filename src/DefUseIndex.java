@@ -0,0 +1,224 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Where each variable is defined and read in the AST of the SAD Compiler for Alan Labouseur's
+ * compilers class, so that code generation can tell which variables are ever read without walking
+ * the AST again.
+ *
+ * A variable is the index of its SymbolItem, and a Node is its index in the arena of the AST. A
+ * definition is an Assignment Statement, and a read is the leaf of the variable anywhere other than
+ * the left of an Assignment Statement. The SemanticAnalyzer adds them in the order they are in the
+ * program; they are only sorted out by variable once the index is first looked at.
+ *
+ * @author Tim Polizzi
+ */
+public class DefUseIndex {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private Entries defs;
+  private Entries uses;
+
+  /**
+   * Creates a new, empty DefUseIndex.
+   */
+  public DefUseIndex() {
+    defs = new Entries();
+    uses = new Entries();
+  }
+
+  /**
+   * The pairs of a variable and a Node, first in the order they were added and then, once they
+   * are looked at, grouped by variable.
+   */
+  private static class Entries {
+
+    private int[] symbols = new int[INITIAL_CAPACITY];
+    private int[] nodes = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // Where the Nodes of each variable start in grouped, or null if it has to be worked out again
+    private int[] starts;
+    private int[] grouped;
+
+    private void insert(int position, int symbol, int node) {
+      if (size == nodes.length) {
+        symbols = Arrays.copyOf(symbols, size * 2);
+        nodes = Arrays.copyOf(nodes, size * 2);
+      }
+      System.arraycopy(symbols, position, symbols, position + 1, size - position);
+      System.arraycopy(nodes, position, nodes, position + 1, size - position);
+      symbols[position] = symbol;
+      nodes[position] = node;
+      size++;
+      starts = null;
+    }
+
+    private void insertAll(int position, Entries from, int[] map) {
+      int count = from.size;
+      if (size + count > nodes.length) {
+        int capacity = Math.max(nodes.length * 2, size + count);
+        symbols = Arrays.copyOf(symbols, capacity);
+        nodes = Arrays.copyOf(nodes, capacity);
+      }
+      System.arraycopy(symbols, position, symbols, position + count, size - position);
+      System.arraycopy(nodes, position, nodes, position + count, size - position);
+      for (int i = 0; i < count; i++) {
+        symbols[position + i] = from.symbols[i];
+        nodes[position + i] = map[from.nodes[i]];
+      }
+      size += count;
+      starts = null;
+    }
+
+    private void removeAll(BitSet removed) {
+      int kept = 0;
+      for (int i = 0; i < size; i++) {
+        if (!removed.get(nodes[i])) {
+          symbols[kept] = symbols[i];
+          nodes[kept] = nodes[i];
+          kept++;
+        }
+      }
+      size = kept;
+      starts = null;
+    }
+
+    /**
+     * Groups the Nodes by variable, keeping the order they were added in for each one.
+     */
+    private void group() {
+      int symbolCount = 0;
+      for (int i = 0; i < size; i++) {
+        symbolCount = Math.max(symbolCount, symbols[i] + 1);
+      }
+
+      starts = new int[symbolCount + 1];
+      for (int i = 0; i < size; i++) {
+        starts[symbols[i] + 1]++;
+      }
+      for (int s = 0; s < symbolCount; s++) {
+        starts[s + 1] += starts[s];
+      }
+
+      int[] next = Arrays.copyOf(starts, symbolCount);
+      grouped = new int[size];
+      for (int i = 0; i < size; i++) {
+        grouped[next[symbols[i]]++] = nodes[i];
+      }
+    }
+
+    private int[] get(int symbol) {
+      if (starts == null) {
+        group();
+      }
+      if (symbol < 0 || symbol + 1 >= starts.length) {
+        return new int[0];
+      }
+      return Arrays.copyOfRange(grouped, starts[symbol], starts[symbol + 1]);
+    }
+
+    private int count(int symbol) {
+      if (starts == null) {
+        group();
+      }
+      if (symbol < 0 || symbol + 1 >= starts.length) {
+        return 0;
+      }
+      return starts[symbol + 1] - starts[symbol];
+    }
+  }
+
+  /**
+   * Adds a definition of a variable.
+   *
+   * @param symbol The index of the variable's SymbolItem.
+   * @param node The index of the Assignment Statement.
+   */
+  public void addDef(int symbol, int node) {
+    defs.insert(defs.size, symbol, node);
+  }
+
+  /**
+   * Adds a read of a variable.
+   *
+   * @param symbol The index of the variable's SymbolItem.
+   * @param node The index of the leaf the variable is read at.
+   */
+  public void addUse(int symbol, int node) {
+    uses.insert(uses.size, symbol, node);
+  }
+
+  /**
+   * Gets how far along the index is, for putting the entries of another index in at this point
+   * later on.
+   *
+   * @return The number of definitions and the number of reads, in that order.
+   */
+  public int[] position() {
+    return new int[] {defs.size, uses.size};
+  }
+
+  /**
+   * Puts everything in another index in at a point this one was at before, for a Block that was
+   * analyzed on its own and copied into the AST afterwards.
+   *
+   * @param position What position returned at the point the Block was at.
+   * @param from The index of the Block.
+   * @param map Where each Node of the Block was copied to, by its index in the Block's own AST.
+   */
+  public void insertAll(int[] position, DefUseIndex from, int[] map) {
+    defs.insertAll(position[0], from.defs, map);
+    uses.insertAll(position[1], from.uses, map);
+  }
+
+  /**
+   * Leaves out every definition and read at some Nodes, which are no longer in the AST as they
+   * were, such as the leaves constant folding puts a single leaf in place of.
+   *
+   * @param removed The indices of the Nodes.
+   */
+  public void removeAll(BitSet removed) {
+    defs.removeAll(removed);
+    uses.removeAll(removed);
+  }
+
+  /**
+   * Gets the Assignment Statements that define a variable.
+   *
+   * @param symbol The index of the variable's SymbolItem.
+   * @return The indices of the Nodes, in the order they are in the program.
+   */
+  public int[] getDefs(int symbol) {
+    return defs.get(symbol);
+  }
+
+  /**
+   * Gets the leaves a variable is read at.
+   *
+   * @param symbol The index of the variable's SymbolItem.
+   * @return The indices of the Nodes, in the order they are in the program.
+   */
+  public int[] getUses(int symbol) {
+    return uses.get(symbol);
+  }
+
+  public int getDefCount(int symbol) {
+    return defs.count(symbol);
+  }
+
+  public int getUseCount(int symbol) {
+    return uses.count(symbol);
+  }
+
+  /**
+   * Checks if a variable is ever read, which a store to it is useless without.
+   *
+   * @param symbol The index of the variable's SymbolItem.
+   * @return True if it is read anywhere, false otherwise.
+   */
+  public boolean isRead(int symbol) {
+    return getUseCount(symbol) > 0;
+  }
+}
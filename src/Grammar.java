@@ -0,0 +1,406 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The grammar of the language for the SAD Compiler for Alan Labouseur's compilers class, and the
+ * LL(1) parse table that is generated from it for the Parser.
+ *
+ * The table is generated from the FIRST and FOLLOW sets of the grammar. Any place where the grammar
+ * is not LL(1), which is two productions wanting the same entry in the table, is reported when the
+ * table is generated, and the production that was written first is the one that is kept.
+ *
+ * @author Tim Polizzi
+ */
+public class Grammar {
+
+  private static final TokenKind[] TERMINALS = TokenKind.values();
+  private static final NonTerminal[] NON_TERMINALS = NonTerminal.values();
+
+  /**
+   * Where there is no production in the table.
+   */
+  public static final int NONE = -1;
+
+  /**
+   * The language itself.
+   */
+  public static final Grammar LANGUAGE = language();
+
+  private NonTerminal start;
+  private List<NonTerminal> heads;
+  private List<GrammarSymbol[]> bodies;
+  private Map<NonTerminal, TokenKind> expected;
+
+  private EnumSet<NonTerminal> nullable;
+  private Map<NonTerminal, EnumSet<TokenKind>> first;
+  private Map<NonTerminal, EnumSet<TokenKind>> follow;
+  private int[][] table;
+  private List<String> conflicts;
+
+  /**
+   * Creates a new Grammar with no productions.
+   *
+   * @param start The nonterminal that a whole program is.
+   */
+  public Grammar(NonTerminal start) {
+    this.start = start;
+    heads = new ArrayList<>();
+    bodies = new ArrayList<>();
+    expected = new EnumMap<>(NonTerminal.class);
+  }
+
+  /**
+   * Program -> Block $
+   *
+   * Block -> { StmtList }
+   *
+   * StmtList -> Stmt StmtList | lambda
+   *
+   * Stmt -> PrintStmt | AssignStmt | VarDecl | WhileStmt | IfStmt | Block
+   *
+   * PrintStmt -> print ( Expr )
+   *
+   * AssignStmt -> id = Expr
+   *
+   * VarDecl -> type id
+   *
+   * WhileStmt -> while BoolExpr Block
+   *
+   * IfStmt -> if BoolExpr Block
+   *
+   * Expr -> IntExpr | StrExpr | BoolExpr | ID
+   *
+   * IntExpr -> digit IntTail
+   *
+   * IntTail -> intOp Expr | lambda
+   *
+   * StrExpr -> " CharList "
+   *
+   * BoolExpr -> ( Expr BoolOp Expr ) | BoolVal
+   *
+   * ID -> CharVal
+   *
+   * CharList -> CharVal CharList | space CharList | lambda
+   *
+   * type -> int | string | boolean
+   *
+   * charVal -> a | b | c | ... | z
+   *
+   * space -> " "
+   *
+   * digit -> 0 | 1 | 2 | 3 | 4 | 5 | 6 | 7 | 8 | 9
+   *
+   * boolOp -> == | !=
+   *
+   * boolVal -> true | false
+   *
+   * intOp -> +
+   *
+   * IntExpr used to be "digit intOp Expr | digit", which is left factored into IntTail here.
+   */
+  private static Grammar language() {
+    Grammar grammar = new Grammar(NonTerminal.PROGRAM);
+
+    grammar.rule(NonTerminal.PROGRAM, NonTerminal.BLOCK, TokenKind.EOP);
+    grammar.expect(NonTerminal.PROGRAM, TokenKind.L_BRACE);
+
+    grammar.rule(NonTerminal.BLOCK, TokenKind.L_BRACE, NonTerminal.STMT_LIST, TokenKind.R_BRACE);
+
+    grammar.rule(NonTerminal.STMT_LIST, NonTerminal.STMT, NonTerminal.STMT_LIST);
+    grammar.rule(NonTerminal.STMT_LIST);
+
+    grammar.rule(NonTerminal.STMT, NonTerminal.PRINT_STMT);
+    grammar.rule(NonTerminal.STMT, NonTerminal.ASSIGN_STMT);
+    grammar.rule(NonTerminal.STMT, NonTerminal.VAR_DECL);
+    grammar.rule(NonTerminal.STMT, NonTerminal.WHILE_STMT);
+    grammar.rule(NonTerminal.STMT, NonTerminal.IF_STMT);
+    grammar.rule(NonTerminal.STMT, NonTerminal.BLOCK);
+
+    grammar.rule(NonTerminal.PRINT_STMT, TokenKind.PRINT_STMT, TokenKind.L_PAREN,
+        NonTerminal.EXPR, TokenKind.R_PAREN);
+    grammar.rule(NonTerminal.ASSIGN_STMT, NonTerminal.ID, TokenKind.ASSIGN_OP, NonTerminal.EXPR);
+    grammar.rule(NonTerminal.VAR_DECL, NonTerminal.TYPE, NonTerminal.ID);
+    grammar.rule(NonTerminal.WHILE_STMT, TokenKind.WHILE_LOOP, NonTerminal.BOOL_EXPR,
+        NonTerminal.BLOCK);
+    grammar.rule(NonTerminal.IF_STMT, TokenKind.IF_STMT, NonTerminal.BOOL_EXPR, NonTerminal.BLOCK);
+
+    grammar.rule(NonTerminal.EXPR, NonTerminal.INT_EXPR);
+    grammar.rule(NonTerminal.EXPR, NonTerminal.STR_EXPR);
+    grammar.rule(NonTerminal.EXPR, NonTerminal.BOOL_EXPR);
+    grammar.rule(NonTerminal.EXPR, NonTerminal.ID);
+
+    grammar.rule(NonTerminal.INT_EXPR, NonTerminal.DIGIT, NonTerminal.INT_TAIL);
+    grammar.rule(NonTerminal.INT_TAIL, NonTerminal.INT_OP, NonTerminal.EXPR);
+    grammar.rule(NonTerminal.INT_TAIL);
+
+    grammar.rule(NonTerminal.STR_EXPR, TokenKind.STRING, NonTerminal.CHAR_LIST, TokenKind.STRING);
+
+    grammar.rule(NonTerminal.BOOL_EXPR, TokenKind.L_PAREN, NonTerminal.EXPR, NonTerminal.BOOL_OP,
+        NonTerminal.EXPR, TokenKind.R_PAREN);
+    grammar.rule(NonTerminal.BOOL_EXPR, NonTerminal.BOOL_VAL);
+    grammar.expect(NonTerminal.BOOL_EXPR, TokenKind.L_PAREN);
+
+    grammar.rule(NonTerminal.ID, NonTerminal.CHAR_VAL);
+    grammar.expect(NonTerminal.ID, TokenKind.CHAR);
+
+    grammar.rule(NonTerminal.CHAR_LIST, NonTerminal.CHAR_VAL, NonTerminal.CHAR_LIST);
+    grammar.rule(NonTerminal.CHAR_LIST, NonTerminal.SPACE, NonTerminal.CHAR_LIST);
+    grammar.rule(NonTerminal.CHAR_LIST);
+
+    grammar.rule(NonTerminal.TYPE, TokenKind.I_TYPE);
+    grammar.rule(NonTerminal.TYPE, TokenKind.S_TYPE);
+    grammar.rule(NonTerminal.TYPE, TokenKind.B_TYPE);
+    grammar.expect(NonTerminal.TYPE, TokenKind.I_TYPE);
+
+    grammar.rule(NonTerminal.CHAR_VAL, TokenKind.CHAR);
+    grammar.expect(NonTerminal.CHAR_VAL, TokenKind.CHAR);
+
+    grammar.rule(NonTerminal.SPACE, TokenKind.SPACE);
+    grammar.expect(NonTerminal.SPACE, TokenKind.SPACE);
+
+    grammar.rule(NonTerminal.DIGIT, TokenKind.INT);
+    grammar.expect(NonTerminal.DIGIT, TokenKind.INT);
+
+    grammar.rule(NonTerminal.BOOL_OP, TokenKind.EQUAL);
+    grammar.rule(NonTerminal.BOOL_OP, TokenKind.NOT_EQUAL);
+    grammar.expect(NonTerminal.BOOL_OP, TokenKind.EQUAL);
+
+    grammar.rule(NonTerminal.BOOL_VAL, TokenKind.T_BOOL);
+    grammar.rule(NonTerminal.BOOL_VAL, TokenKind.F_BOOL);
+    grammar.expect(NonTerminal.BOOL_VAL, TokenKind.T_BOOL);
+
+    grammar.rule(NonTerminal.INT_OP, TokenKind.INT_OP);
+    grammar.expect(NonTerminal.INT_OP, TokenKind.INT_OP);
+
+    grammar.generate();
+    return grammar;
+  }
+
+  /**
+   * Adds a production to the grammar. A production with an empty body is lambda.
+   *
+   * @param head The nonterminal the production is for.
+   * @param body What the nonterminal is made of.
+   */
+  public void rule(NonTerminal head, GrammarSymbol... body) {
+    heads.add(head);
+    bodies.add(body);
+  }
+
+  /**
+   * Sets what is reported as expected when a nonterminal has no production for the current token.
+   * A nonterminal without one quietly matches nothing.
+   *
+   * @param head The nonterminal.
+   * @param kind The kind of token to report as expected.
+   */
+  public void expect(NonTerminal head, TokenKind kind) {
+    expected.put(head, kind);
+  }
+
+  /**
+   * Works out the FIRST and FOLLOW sets of the grammar and generates the parse table from them.
+   */
+  public void generate() {
+    computeFirst();
+    computeFollow();
+
+    table = new int[NON_TERMINALS.length][TERMINALS.length];
+    for (int[] row : table) {
+      Arrays.fill(row, NONE);
+    }
+    conflicts = new ArrayList<>();
+
+    for (int p = 0; p < bodies.size(); p++) {
+      NonTerminal head = heads.get(p);
+      EnumSet<TokenKind> lookahead = EnumSet.noneOf(TokenKind.class);
+
+      if (firstOf(bodies.get(p), 0, lookahead)) {
+        lookahead.addAll(follow.get(head));
+      }
+
+      for (TokenKind kind : lookahead) {
+        int current = table[head.ordinal()][kind.ordinal()];
+
+        if (current == NONE) {
+          table[head.ordinal()][kind.ordinal()] = p;
+        } else if (current != p) {
+          conflict(head, kind, current, p);
+        }
+      }
+    }
+  }
+
+  /**
+   * Works out which nonterminals can be lambda, and what tokens every nonterminal can start with.
+   */
+  private void computeFirst() {
+    nullable = EnumSet.noneOf(NonTerminal.class);
+    first = new EnumMap<>(NonTerminal.class);
+    for (NonTerminal nonTerminal : NON_TERMINALS) {
+      first.put(nonTerminal, EnumSet.noneOf(TokenKind.class));
+    }
+
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+
+      for (int p = 0; p < bodies.size(); p++) {
+        NonTerminal head = heads.get(p);
+        EnumSet<TokenKind> headFirst = first.get(head);
+        int before = headFirst.size();
+
+        if (firstOf(bodies.get(p), 0, headFirst) && nullable.add(head)) {
+          changed = true;
+        }
+        if (headFirst.size() != before) {
+          changed = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Works out what tokens can come right after every nonterminal.
+   */
+  private void computeFollow() {
+    follow = new EnumMap<>(NonTerminal.class);
+    for (NonTerminal nonTerminal : NON_TERMINALS) {
+      follow.put(nonTerminal, EnumSet.noneOf(TokenKind.class));
+    }
+
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+
+      for (int p = 0; p < bodies.size(); p++) {
+        GrammarSymbol[] body = bodies.get(p);
+
+        for (int i = 0; i < body.length; i++) {
+          if (body[i] instanceof NonTerminal) {
+            EnumSet<TokenKind> symbolFollow = follow.get((NonTerminal) body[i]);
+            int before = symbolFollow.size();
+
+            if (firstOf(body, i + 1, symbolFollow)) {
+              symbolFollow.addAll(follow.get(heads.get(p)));
+            }
+            if (symbolFollow.size() != before) {
+              changed = true;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds what the rest of a production can start with to a set.
+   *
+   * @param body The production.
+   * @param from Where in the production to start.
+   * @param into The set to add to.
+   * @return True if the rest of the production can be lambda, false otherwise.
+   */
+  private boolean firstOf(GrammarSymbol[] body, int from, EnumSet<TokenKind> into) {
+    for (int i = from; i < body.length; i++) {
+      if (body[i] instanceof TokenKind) {
+        into.add((TokenKind) body[i]);
+        return false;
+      }
+
+      NonTerminal nonTerminal = (NonTerminal) body[i];
+      into.addAll(first.get(nonTerminal));
+      if (!nullable.contains(nonTerminal)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reports two productions that both want the same entry in the table.
+   */
+  private void conflict(NonTerminal head, TokenKind kind, int kept, int dropped) {
+    String type = first.get(head).contains(kind) && !follow.get(head).contains(kind)
+        ? "FIRST/FIRST" : "FIRST/FOLLOW";
+    String message = type + " conflict in " + head.getLabel() + " on [" + kind + "] between "
+        + production(kept) + " and " + production(dropped);
+
+    conflicts.add(message);
+    System.out.println("ERROR Grammar - " + message);
+  }
+
+  /**
+   * Writes a production out the way it is written in the grammar.
+   *
+   * @param p The index of the production.
+   * @return The production as a String.
+   */
+  public String production(int p) {
+    StringBuilder toReturn = new StringBuilder(heads.get(p).getLabel()).append(" ->");
+    GrammarSymbol[] body = bodies.get(p);
+
+    if (body.length == 0) {
+      toReturn.append(" lambda");
+    }
+    for (GrammarSymbol symbol : body) {
+      toReturn.append(' ');
+      if (symbol instanceof NonTerminal) {
+        toReturn.append(((NonTerminal) symbol).getLabel());
+      } else {
+        toReturn.append(symbol);
+      }
+    }
+
+    return toReturn.toString();
+  }
+
+  /**
+   * Looks up which production to use for a nonterminal.
+   *
+   * @param head The nonterminal.
+   * @param lookahead The kind of the current token, or null at the end of the tokens.
+   * @return The index of the production, or NONE if there is no production for the token.
+   */
+  public int predict(NonTerminal head, TokenKind lookahead) {
+    if (lookahead == null) {
+      return NONE;
+    }
+    return table[head.ordinal()][lookahead.ordinal()];
+  }
+
+  public NonTerminal getStart() {
+    return start;
+  }
+
+  public GrammarSymbol[] getBody(int p) {
+    return bodies.get(p);
+  }
+
+  public boolean isNullable(NonTerminal nonTerminal) {
+    return nullable.contains(nonTerminal);
+  }
+
+  /**
+   * Gets what is reported as expected when a nonterminal has no production for the current token.
+   *
+   * @param nonTerminal The nonterminal.
+   * @return The kind of token expected, or null if the nonterminal quietly matches nothing.
+   */
+  public TokenKind getExpected(NonTerminal nonTerminal) {
+    return expected.get(nonTerminal);
+  }
+
+  /**
+   * Gets the conflicts that were found when the table was generated.
+   *
+   * @return A list of the conflicts, which is empty if the grammar is LL(1).
+   */
+  public List<String> getConflicts() {
+    return conflicts;
+  }
+}
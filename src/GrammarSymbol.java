@@ -0,0 +1,9 @@
+/**
+ * Anything that can be on the right hand side of a production in the Grammar, which is either a
+ * kind of Token or a NonTerminal.
+ *
+ * @author Tim Polizzi
+ */
+public interface GrammarSymbol {
+
+}
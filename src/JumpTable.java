@@ -48,6 +48,16 @@ public class JumpTable {
     return table.get(temp);
   }
 
+  /**
+   * Gets the name of a jump, which is "J" and its number.
+   *
+   * @param id The number of the jump, in the order the jumps were added.
+   * @return The name of the jump.
+   */
+  public static String jumpName(int id) {
+    return "J" + id;
+  }
+
   public int getJumps() {
     return table.size();
   }
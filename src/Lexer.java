@@ -1,5 +1,8 @@
+import java.io.IOException;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * A lexer for the SAD Compiler for Alan Labouseur's compilers class.
@@ -8,37 +11,136 @@ import java.util.regex.Pattern;
  */
 public class Lexer {
 
-  private ArrayList<Token> masterList;
+  // Character classes, legal symbols are {,},(,),=,+,<,>,$ and the two part ones are =,!,<,>
+  private static final int OTHER = 0;
+  private static final int LETTER = 1;
+  private static final int DIGIT = 2;
+  private static final int DOT = 3;
+  private static final int SYMBOL = 4;
+  private static final int TWO_PART = 5;
+  private static final int QUOTE = 6;
+  private static final int SPACE = 7;
+  private static final int NEWLINE = 8;
+
+  private static final byte[] CHAR_CLASS = new byte[128];
+  private static final TokenKind[] SYMBOL_KIND = new TokenKind[128];
+
+  // The keyword/number DFA, over the columns a-z, 0-9 and '.'
+  private static final String[] KEYWORDS = {"print", "while", "int", "if", "string", "boolean",
+      "false", "true"};
+  private static final int WORD_COLUMNS = 37;
+  private static final int WORD_DEAD = -1;
+  private static final int WORD_START = 0;
+  private static final int WORD_ZERO = 1;
+  private static final int WORD_NUMBER = 2;
+
+  private static final int[][] WORD_DFA;
+  private static final TokenKind[] WORD_KIND;
+
+  static {
+    for (char c = 'a'; c <= 'z'; c++) {
+      CHAR_CLASS[c] = LETTER;
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      CHAR_CLASS[c] = DIGIT;
+    }
+    for (char c : "{}()+$".toCharArray()) {
+      CHAR_CLASS[c] = SYMBOL;
+    }
+    for (char c : "=!<>".toCharArray()) {
+      CHAR_CLASS[c] = TWO_PART;
+    }
+    for (char c : "{}()+$=!<>".toCharArray()) {
+      SYMBOL_KIND[c] = TokenKind.classify(Character.toString(c));
+    }
+    CHAR_CLASS['.'] = DOT;
+    CHAR_CLASS['"'] = QUOTE;
+    CHAR_CLASS[' '] = SPACE;
+    CHAR_CLASS['\n'] = NEWLINE;
+
+    // Integers are any number, without leading zeros, the rest of the states spell the keywords
+    ArrayList<int[]> states = new ArrayList<>();
+    ArrayList<TokenKind> accept = new ArrayList<>();
+    for (int i = 0; i <= WORD_NUMBER; i++) {
+      int[] row = new int[WORD_COLUMNS];
+      Arrays.fill(row, WORD_DEAD);
+      states.add(row);
+      accept.add(i == WORD_START ? null : TokenKind.INT);
+    }
+
+    states.get(WORD_START)[26] = WORD_ZERO;
+    for (int digit = 1; digit <= 9; digit++) {
+      states.get(WORD_START)[26 + digit] = WORD_NUMBER;
+    }
+    for (int digit = 0; digit <= 9; digit++) {
+      states.get(WORD_NUMBER)[26 + digit] = WORD_NUMBER;
+    }
+
+    for (String keyword : KEYWORDS) {
+      int state = WORD_START;
+      for (char c : keyword.toCharArray()) {
+        int column = c - 'a';
+        if (states.get(state)[column] == WORD_DEAD) {
+          int[] row = new int[WORD_COLUMNS];
+          Arrays.fill(row, WORD_DEAD);
+          states.add(row);
+          accept.add(null);
+          states.get(state)[column] = states.size() - 1;
+        }
+        state = states.get(state)[column];
+      }
+      accept.set(state, TokenKind.classify(keyword));
+    }
+
+    WORD_DFA = states.toArray(new int[0][]);
+    WORD_KIND = accept.toArray(new TokenKind[0]);
+  }
+
+  // How many characters of the program are held in memory at once while lexing
+  private static final int WINDOW_SIZE = 4096;
+  private static final int EOF = -1;
+
+  private StringBuilder text;
+  private TokenBuffer tokens;
   private int errCount;
   private int warnCount;
   private boolean multiLineQuote;
 
+  private Readable source;
+  private CharBuffer window;
+  private boolean sourceDone;
+  private int offset;
+  private int column;
+  private boolean verbose;
+  private TokenKind wordKind;
+
   /**
-   * Analyzes a file fileToRead, and generates a list of Tokens.
+   * Analyzes a program read from source, and generates a list of Tokens. The program is read a
+   * window at a time, so source can be a Reader over a file or a CharBuffer over a program that is
+   * already in memory.
    *
-   * @param fileToRead The file that is to be turned into a list of tokens.
+   * @param source The program that is to be turned into a list of tokens.
    * @param verbose A boolean that when True, shows all generated tokens.
    */
-  public Lexer(String fileToRead, int programNo, boolean verbose) {
-    masterList = new ArrayList<Token>();
+  public Lexer(Readable source, int programNo, boolean verbose) {
+    text = new StringBuilder();
+    tokens = new TokenBuffer(text);
     errCount = 0;
     warnCount = 0;
 
-    int lineNo = 1;
+    this.source = source;
+    this.verbose = verbose;
+    window = CharBuffer.allocate(WINDOW_SIZE);
+    window.flip();
+    sourceDone = false;
+    offset = 0;
+    column = 0;
 
     System.out.println("\nINFO Lexer - Lexing program " + programNo + "...");
 
-    ArrayList<String> lineList = breakLines(fileToRead);
-
-    for (String line : lineList) {
-      char[] charList = line.toCharArray();
-      ArrayList<Token> currentLine = lexLine(charList, lineNo, verbose);
-
-      masterList.addAll(currentLine);
-      lineNo++;
-    }
+    lex();
 
-    eopWarning(masterList);
+    eopWarning();
 
     if (errCount == 0) {
       System.out
@@ -51,202 +153,200 @@ public class Lexer {
   }
 
   /**
-   * Lexes a file in non-verbose mode.
+   * Analyzes a file fileToRead, and generates a list of Tokens.
    *
-   * @param fileToRead The file to be Lexed.
+   * @param fileToRead The file that is to be turned into a list of tokens.
+   * @param verbose A boolean that when True, shows all generated tokens.
    */
-  public Lexer(String fileToRead, int programNo) {
-    this(fileToRead, programNo, false);
+  public Lexer(String fileToRead, int programNo, boolean verbose) {
+    this(CharBuffer.wrap(fileToRead), programNo, verbose);
   }
 
   /**
-   * Breaks any lines into separate strings from toBreak.
+   * Lexes a file in non-verbose mode.
    *
-   * @param toBreak The string that is to be broken into lines.
-   * @return An ArrayList containing all the newly broken down strings.
+   * @param fileToRead The file to be Lexed.
    */
-  private ArrayList<String> breakLines(String toBreak) {
-    ArrayList<String> lines = new ArrayList<>();
-
-    if (toBreak.contains("\n")) {
-      while (toBreak.contains("\n")) {
-        lines.add(toBreak.substring(0, toBreak.indexOf("\n") + 1));
-        toBreak = toBreak.substring(toBreak.indexOf("\n") + 1);
-      }
-      if (!toBreak.equals("")) {
-        lines.add(toBreak);
-      }
-    } else {
-      lines.add(toBreak);
-    }
-
-    return lines;
+  public Lexer(String fileToRead, int programNo) {
+    this(fileToRead, programNo, false);
   }
 
   /**
-   * Generates a list of tokens from a line of code, using the grammar of the SAD compiler.
+   * Generates the list of tokens for the whole program, using the grammar of the SAD compiler.
    *
-   * @param charList The list of characters in the line that is to be broken into tokens.
-   * @param lineNum The line number on which this is occurring.
+   * Every character is classified with a single lookup into CHAR_CLASS, and runs of letters and
+   * digits are fed through the keyword/number DFA, so nothing here allocates per character.
    */
-  private ArrayList<Token> lexLine(char[] charList, int lineNum, boolean verbose) {
-    int current = 0;
-    int lastGood;
-    ArrayList<Token> tokenList = new ArrayList<Token>();
-
-    while (current < charList.length) {
-      String currentToken = "";
-      char currentChar = charList[current];
+  private void lex() {
+    while (peek(0) != EOF) {
+      char currentChar = (char) peek(0);
+      int charClass = classOf(currentChar);
 
       // Check if the current item is a symbol
-      if (isSymbol(currentChar) && !multiLineQuote) {
-        currentToken += currentChar;
+      if (charClass == SYMBOL || charClass == TWO_PART) {
+        int start = offset;
+        TokenKind kind;
 
         // If that symbol is two parts, check here
-        if (isTwoPart(currentChar) && charList[current + 1] == '=') {
-          current++;
-          currentToken += charList[current];
+        if (charClass == TWO_PART && peek(1) == '=') {
+          kind = currentChar == '=' ? TokenKind.EQUAL
+              : currentChar == '!' ? TokenKind.NOT_EQUAL : TokenKind.ERROR;
+          advance();
+          advance();
+        } else {
+          kind = SYMBOL_KIND[currentChar];
+          advance();
         }
 
-        current++;
+        updateToken(kind, start, column);
 
         //check for comments, skip the commented section
-      } else if (Pattern.matches("/", Character.toString(currentChar)) &&
-          Pattern.matches("\\*", Character.toString(charList[current + 1])) && !multiLineQuote) {
-        current = ignoreComments(charList, current);
+      } else if (isCommentStart()) {
+        ignoreComments();
 
         // what to do in case of quotes
-      } else if (currentChar == '"' || multiLineQuote) {
-        int quoteLoop = current;
-        Token thisToken = null;
-
-        if (!multiLineQuote) {
-          thisToken =
-              new Token(Character.toString(charList[quoteLoop]), lineNum, quoteLoop, false);
-
-          tokenList = updateToken(thisToken, tokenList, verbose);
+      } else if (charClass == QUOTE) {
+        lexQuote();
 
-          quoteLoop++;
-        }
-
-        // This is for handling the multiline quotes
-        boolean cont = true;
-        while (cont) {
-          if (Pattern.matches("\"", Character.toString(charList[quoteLoop]))) {
-            cont = false;
-            multiLineQuote = false;
-          } else if (Pattern.matches("[$]", Character.toString(charList[quoteLoop]))) {
-            cont = false;
-            System.out.println("WARNING Lexer - Missing EndQuote Character '\"'");
-            warnCount++;
-            multiLineQuote = false;
-          } else if (Pattern.matches("\n", Character.toString(charList[quoteLoop]))) {
-            multiLineQuote = true;
-            quoteLoop++;
-            cont = false;
-          } else if (Pattern.matches("/", Character.toString(charList[quoteLoop])) &&
-              Pattern.matches("\\*", Character.toString(charList[quoteLoop + 1]))
-              && !multiLineQuote) {
-            quoteLoop = ignoreComments(charList, quoteLoop);
-          } else {
-            thisToken =
-                new Token(Character.toString(charList[quoteLoop]), lineNum, quoteLoop, true);
-            tokenList = updateToken(thisToken, tokenList, verbose);
-
-            quoteLoop++;
-          }
+        // Check if it is a legal character or integer (NO DOUBLES!!!!)
+      } else if (charClass == LETTER || charClass == DIGIT || charClass == DOT) {
+        int tokenColumn = column;
+        int start = offset;
+        wordKind = charClass == LETTER ? TokenKind.CHAR : TokenKind.ERROR;
+        int length = matchWord();
+
+        for (int i = 0; i < length; i++) {
+          advance();
         }
-        if (quoteLoop < charList.length &&
-            Pattern.matches("\"", Character.toString(charList[quoteLoop]))) {
-          thisToken =
-              new Token(Character.toString(charList[quoteLoop]), lineNum, quoteLoop, false);
-          tokenList = updateToken(thisToken, tokenList, verbose);
 
-          quoteLoop++;
-        }
+        updateToken(wordKind, start, tokenColumn);
 
-        current = quoteLoop;
+        // Something isn't right here, unless it is just whitespace
+      } else {
+        int start = offset;
+        advance();
 
-        // Check if it is a legal character or integer (NO DOUBLES!!!!)
-      } else if (legalVal(currentChar)) {
-        int start = current;
-        lastGood = current + 1;
-        String tempToken = "";
-
-        while ((current < charList.length) && legalVal(charList[current])) {
-          if (isKeyword(tempToken) || isNumber(tempToken)) {
-            lastGood = current;
-          }
-          tempToken += charList[current];
-          current++;
+        if (charClass != SPACE && charClass != NEWLINE) {
+          updateToken(TokenKind.ERROR, start, column);
         }
+      }
+    }
+  }
 
-        if (isKeyword(tempToken) || isNumber(tempToken)) {
-          lastGood = current;
-        }
+  /**
+   * Lexes a string, starting at its opening quote. A string that runs onto the next line keeps
+   * going there, but comments are no longer skipped once it has.
+   */
+  private void lexQuote() {
+    quoteToken(TokenKind.STRING);
+
+    // This is for handling the multiline quotes
+    boolean cont = true;
+    while (cont && peek(0) != EOF) {
+      char quoteChar = (char) peek(0);
+
+      if (quoteChar == '"') {
+        cont = false;
+        multiLineQuote = false;
+      } else if (quoteChar == '$') {
+        cont = false;
+        System.out.println("WARNING Lexer - Missing EndQuote Character '\"'");
+        warnCount++;
+        multiLineQuote = false;
+      } else if (quoteChar == '\n') {
+        multiLineQuote = true;
+        advance();
+      } else if (isCommentStart() && !multiLineQuote) {
+        ignoreComments();
+      } else {
+        quoteToken(TokenKind.classifyInString(quoteChar));
+      }
+    }
 
-        int endBound = lastGood - start;
-        String goodToken = tempToken.substring(0, endBound);
-        Token thisToken = new Token(goodToken, lineNum, start, false);
+    if (peek(0) == '"') {
+      quoteToken(TokenKind.STRING);
+    }
+  }
 
-        tokenList = updateToken(thisToken, tokenList, verbose);
+  /**
+   * Consumes a single character of a string as a Token. These are reported at the position of the
+   * character itself, rather than the position after it like the rest of the Tokens.
+   *
+   * @param kind The kind of the character.
+   */
+  private void quoteToken(TokenKind kind) {
+    int tokenColumn = column;
+    int start = offset;
 
-        current = lastGood;
+    advance();
+    updateToken(kind, start, tokenColumn);
+  }
 
-        // Something isn't right here
-      } else {
-        currentToken += currentChar;
-        current++;
+  /**
+   * Runs the keyword/number DFA over the letters and digits coming up next, and returns the length
+   * of the longest prefix that is a keyword or a number. If no prefix is, the word is broken off
+   * after its first character (so "ab" becomes the two ids "a" and "b"). The kind of the matched
+   * word is left in wordKind.
+   *
+   * @return The number of characters in the matched word.
+   */
+  private int matchWord() {
+    int state = WORD_START;
+    int lastAccept = 1;
+    int ahead = 0;
+
+    while (peek(ahead) != EOF) {
+      int wordCol = wordColumn((char) peek(ahead));
+      if (wordCol < 0) {
+        break;
+      }
+
+      state = WORD_DFA[state][wordCol];
+      if (state == WORD_DEAD) {
+        break;
       }
 
-      // skip spaces, ignore empty string, ignore new lines
-      if (!currentToken.equals(" ") && !currentToken.equals("") && !Pattern
-          .matches("\\n", currentToken)) {
-        Token thisToken = new Token(currentToken, lineNum, current, false);
-        tokenList = updateToken(thisToken, tokenList, verbose);
+      ahead++;
+      if (WORD_KIND[state] != null) {
+        lastAccept = ahead;
+        wordKind = WORD_KIND[state];
       }
     }
 
-    return tokenList;
+    return lastAccept;
   }
 
   /**
-   * Ignores commented text.
-   *
-   * @param charList The list of characters currently being lexed.
-   * @param current The index of the currently being lexed character.
-   * @return The new value of the item to be lexed.
+   * Ignores commented text, which may run over multiple lines.
    */
-  private int ignoreComments(char[] charList, int current) {
-    current += 2;
+  private void ignoreComments() {
+    advance();
+    advance();
 
     boolean cont2 = true;
-    while (cont2) {
+    while (cont2 && peek(0) != EOF) {
       // Case for program terminating before finding a end comment
-      if (Pattern.matches("\\$", Character.toString(charList[current]))) {
+      if (peek(0) == '$') {
         System.out.println("WARNING Lexer - Missing EndComment Character '*/'");
         warnCount++;
         cont2 = false;
         // Case for end of comment
-      } else if (Pattern.matches("\\*", Character.toString(charList[current])) &&
-          Pattern.matches("/", Character.toString(charList[current + 1]))) {
+      } else if (peek(0) == '*' && peek(1) == '/') {
         cont2 = false;
-        current += 2;
+        advance();
+        advance();
       } else {
-        current++;
+        advance();
       }
     }
-    return current;
   }
 
   /**
    * Returns a warning if the code is missing an EOP character.
-   *
-   * @param tokenList A list containing the tokens generated from lexing the current program.
    */
-  private void eopWarning(ArrayList<Token> tokenList) {
-    if (tokenList.size() < 1 || !tokenList.get(tokenList.size() - 1).getOriginal()
-        .equals("$")) { // If the last token is not '$'
+  private void eopWarning() {
+    if (tokens.size() < 1
+        || tokens.getKind(tokens.size() - 1) != TokenKind.EOP) { // If the last token is not '$'
       System.out.println("WARNING Lexer - Missing EOP Character '$'");
       warnCount++;
     }
@@ -254,117 +354,134 @@ public class Lexer {
   }
 
   /**
-   * Adds a token to an array list and displays tokens or errors.
+   * Adds a token, which runs from start up to the last consumed character, to the TokenBuffer and
+   * displays tokens or errors.
    */
-  private ArrayList<Token> updateToken(Token thisToken, ArrayList<Token> tokenList,
-      boolean isVerbose) {
-    if (thisToken.errorCheck()) {
-      System.out.println(thisToken.toString());
+  private void updateToken(TokenKind kind, int start, int tokenColumn) {
+    if (kind == TokenKind.ERROR) {
+      System.out.println("ERROR Lexer - Error:" + tokens.lineOf(start) + ":" + tokenColumn
+          + " Unrecognized Token: " + text.substring(start, offset));
       errCount++;
     } else {
-      tokenList.add(thisToken);
-      if (isVerbose) {
-        System.out.println(thisToken.toString());
+      int index = tokens.add(kind, start, offset - start, tokenColumn);
+      if (verbose) {
+        System.out.println(new Token(tokens, index).toString());
       }
     }
-    return tokenList;
   }
 
   /**
-   * Checks if a given string is a keyword in the SAD compiler's grammar.
+   * Looks at an upcoming character without consuming it, reading more of the source if the window
+   * does not hold it yet.
    *
-   * @param toCheck The string to be checked if it is a keyword.
-   * @return True if toCheck is a keyword, false otherwise.
+   * @param ahead How far past the current character to look.
+   * @return The character, or EOF if the source ends first.
    */
-  private boolean isKeyword(String toCheck) {
-    String keywordRegex = "(print)|(while)|(i((nt)|(f)))|(string)|(boolean)|(false)|(true)";
-    boolean toReturn = false;
-
-    if (Pattern.matches(keywordRegex, toCheck)) {
-      toReturn = true;
+  private int peek(int ahead) {
+    while (window.remaining() <= ahead && !sourceDone) {
+      fill();
     }
 
-    return toReturn;
+    if (window.remaining() <= ahead) {
+      return EOF;
+    }
+    return window.get(window.position() + ahead);
   }
 
   /**
-   * Checks if a given string is a number in the SAD compiler's grammar.
+   * Consumes the current character, keeping track of the column it was on.
    *
-   * @param toCheck The string to be checked if it is a keyword.
-   * @return True if toCheck is a number, false otherwise.
+   * @return The consumed character.
    */
-  private boolean isNumber(String toCheck) {
-    // Integers are any number, without leading zeros
-    String intRegex = "0|([1-9]\\d*)";
-
-    boolean toReturn = false;
+  private char advance() {
+    char consumed = window.get();
+    text.append(consumed);
+    offset++;
 
-    if (Pattern.matches(intRegex, toCheck)) {
-      toReturn = true;
+    if (consumed == '\n') {
+      column = 0;
+    } else {
+      column++;
     }
 
-    return toReturn;
+    return consumed;
   }
 
   /**
-   * Checks the input to see if it is a symbol legal in the grammar.
-   *
-   * @param toCheck The input that is to be checked if it is legal.
-   * @return True if the input is legal, false otherwise.
+   * Moves the unread part of the window to its front and reads as much of the source as fits after
+   * it.
    */
-  private boolean isSymbol(char toCheck) {
-    // Legal symbols: {,},(,),=,+,<,>,$
-    String symbolRegex = "[{}()=!+<>$]";
-    boolean toReturn = false;
-
-    if (Pattern.matches(symbolRegex, Character.toString(toCheck))) {
-      toReturn = true;
+  private void fill() {
+    window.compact();
+    try {
+      if (source.read(window) < 0) {
+        sourceDone = true;
+      }
+    } catch (IOException e) {
+      System.out.println("ERROR Lexer - Could not read the program: " + e.getMessage());
+      errCount++;
+      sourceDone = true;
     }
-
-    return toReturn;
+    window.flip();
   }
 
   /**
-   * Checks to see if the inputted symbol is part of a two part symbol.
+   * Checks if a comment opens at the current character.
    *
-   * @param toCheck The string that is to be checked.
-   * @return True if the item is a part of a two part symbol, false otherwise.
+   * @return True if the next characters are '/' and '*', false otherwise.
    */
-  private boolean isTwoPart(char toCheck) {
-    String symbolRegex = "[=!<>]";
-    boolean toReturn = false;
+  private boolean isCommentStart() {
+    return peek(0) == '/' && peek(1) == '*';
+  }
 
-    if (Pattern.matches(symbolRegex, Character.toString(toCheck))) {
-      toReturn = true;
+  /**
+   * Looks up the character class of a character in the grammar of the SAD compiler.
+   *
+   * @param toCheck The character to be classified.
+   * @return One of the character class constants, OTHER for anything outside of ASCII.
+   */
+  private static int classOf(char toCheck) {
+    if (toCheck < CHAR_CLASS.length) {
+      return CHAR_CLASS[toCheck];
     }
-
-    return toReturn;
+    return OTHER;
   }
 
   /**
-   * Checks to see if the value is a number, character or a '.' (for doubles).
+   * Gets the column of the keyword/number DFA that a character moves along.
    *
-   * @param toCheck The string that is to be checked.
-   * @return True if the item is a legal symbol, false otherwise.
+   * @param toCheck The character to be checked.
+   * @return The column of the character, or -1 if it can not be part of a word.
    */
-  private boolean legalVal(char toCheck) {
-    String symbolRegex = "[a-z]|\\d|\\.";
-    boolean toReturn = false;
-
-    if (Pattern.matches(symbolRegex, Character.toString(toCheck))) {
-      toReturn = true;
+  private static int wordColumn(char toCheck) {
+    switch (classOf(toCheck)) {
+      case LETTER:
+        return toCheck - 'a';
+      case DIGIT:
+        return 26 + toCheck - '0';
+      case DOT:
+        return 36;
+      default:
+        return -1;
     }
-
-    return toReturn;
   }
 
   /**
-   * Returns the master list of tokens from the program.
+   * Returns the master list of tokens from the program, as a view onto the TokenBuffer.
    *
    * @return The master list of tokens from the program.
    */
-  public ArrayList<Token> getTokenList() {
-    return masterList;
+  public List<Token> getTokenList() {
+    return tokens.asList();
+  }
+
+  /**
+   * Returns the tokens from the program.
+   *
+   * @return The TokenBuffer holding the tokens from the program.
+   */
+  public TokenBuffer getTokens() {
+    return tokens;
   }
 
   /**
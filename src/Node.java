@@ -1,75 +1,206 @@
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
+/**
+ * A read only view onto a single Node of a SyntaxTree. It only holds where the Node is in its
+ * TreeArena, everything else is read out of the arena when it is asked for.
+ */
 public class Node {
 
-  private String val;
-  private List<Node> children;
-  private Node parent;
+  /**
+   * The value of the Nodes that start a new scope.
+   */
+  public static final String SCOPE = "Block";
+
+  private TreeArena arena;
+  private int index;
 
   /**
-   * Generates a new node that contains a Token with a given parent.
+   * Generates a Node that views the Node at index in arena.
    *
-   * @param parent The parent Node of the node.
-   * @param val The Token value of the node.
+   * @param arena The TreeArena the Node is in.
+   * @param index The index of the Node in the arena.
    */
-  public Node(Node parent, String val) {
-    this(val);
-    this.parent = parent;
+  public Node(TreeArena arena, int index) {
+    this.arena = arena;
+    this.index = index;
   }
 
   /**
-   * Generates a new node that contains a value.
+   * Gets the parent Node of this node.
    *
-   * @param val The value of the node.
+   * @return The Node parent node of this node, or null if it is a root.
    */
-  public Node(String val) {
-    children = new ArrayList<>();
-    this.val = val;
+  public Node getParent() {
+    return at(arena.getParent(index));
   }
 
   /**
-   * Sets the Node parent of the node.
+   * Gets the first child of this node, which with getNextSibling walks the children without making
+   * a List of them.
    *
-   * @param parent The Node parent of the node.
+   * @return The first child, or null if there are no children.
    */
-  public void setParent(Node parent) {
-    this.parent = parent;
+  public Node getFirstChild() {
+    return at(arena.getFirstChild(index));
   }
 
   /**
-   * Gets the parent Node of this node.
+   * Gets the child of the parent of this node that comes after it.
    *
-   * @return The Node parent node of this node.
+   * @return The next sibling, or null if this is the last child.
    */
-  public Node getParent() {
-    return parent;
+  public Node getNextSibling() {
+    return at(arena.getNextSibling(index));
   }
 
   /**
-   * Gets the value stored in the node.
+   * Gets how far down the node is from the root of its tree.
    *
-   * @return the value stored in the node.
+   * @return The distance between the node and the root.
    */
-  public String getVal() {
-    return val;
+  public int getDepth() {
+    return arena.getDepth(index);
+  }
+
+  /**
+   * Gets the ID of the scope the node is in, which is the one the closest Block above it starts.
+   *
+   * @return The ID of the scope, or -1 if there is no Block above it.
+   */
+  public int getScope() {
+    return arena.getScope(index);
+  }
+
+  /**
+   * Gets the ID of the scope the node starts, if it is a Block.
+   *
+   * @return The ID of the scope, or -1 if the node is not a Block.
+   */
+  public int getStartedScope() {
+    return arena.getStartedScope(index);
+  }
+
+  /**
+   * Gets what kind of AST Node the node is.
+   *
+   * @return The kind of the node, which is OTHER for anything that is not part of an AST.
+   */
+  public AstKind getKind() {
+    return arena.getKind(index);
+  }
+
+  /**
+   * Gets the type the SemanticAnalyzer worked out for the node.
+   *
+   * @return The type of the node, or null if it is not an expression or a statement with one.
+   */
+  public Type getType() {
+    return arena.getType(index);
   }
 
   /**
-   * Appends a child Node to the List of children.
+   * Gets how many boolean expressions the node is inside of.
    *
-   * @param child the Node to be added to the list of children.
+   * @return The number of boolean expressions, or 0 if it is not in one.
    */
-  public void addChild(Node child) {
-    children.add(child);
+  public int getNesting() {
+    return arena.getNesting(index);
+  }
+
+  /**
+   * Gets the value stored in the node.
+   *
+   * @return the value stored in the node.
+   */
+  public String getVal() {
+    return arena.getVal(index);
   }
 
   /**
    * Gets the List of children of the current Node.
    *
-   * @return the List of children.
+   * @return the List of children, which is a read only view onto the arena.
    */
   public List<Node> getChildren() {
-    return children;
+    return new ChildList();
+  }
+
+  public TreeArena getArena() {
+    return arena;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof Node)) {
+      return false;
+    }
+    Node other = (Node) o;
+    return arena == other.arena && index == other.index;
+  }
+
+  @Override
+  public int hashCode() {
+    return index;
+  }
+
+  private Node at(int node) {
+    if (node == TreeArena.NONE) {
+      return null;
+    }
+    return new Node(arena, node);
+  }
+
+  /**
+   * The List view of the children, which walks the siblings rather than keeping a List of them.
+   */
+  private class ChildList extends AbstractList<Node> {
+
+    @Override
+    public Node get(int i) {
+      if (i < 0 || i >= size()) {
+        throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size());
+      }
+
+      int child = arena.getFirstChild(index);
+      while (i > 0) {
+        child = arena.getNextSibling(child);
+        i--;
+      }
+      return new Node(arena, child);
+    }
+
+    @Override
+    public int size() {
+      return arena.getChildCount(index);
+    }
+
+    @Override
+    public Iterator<Node> iterator() {
+      return new Iterator<Node>() {
+        private int next = arena.getFirstChild(index);
+
+        @Override
+        public boolean hasNext() {
+          return next != TreeArena.NONE;
+        }
+
+        @Override
+        public Node next() {
+          if (next == TreeArena.NONE) {
+            throw new NoSuchElementException();
+          }
+          Node toReturn = new Node(arena, next);
+          next = arena.getNextSibling(next);
+          return toReturn;
+        }
+      };
+    }
   }
 }
@@ -0,0 +1,68 @@
+/**
+ * The nonterminals in the grammar of the SAD Compiler for Alan Labouseur's compilers class, along
+ * with the label each one gets in the CST and the name of the method that used to parse it, which
+ * is what verbose mode prints. A nonterminal without a method is one that was only added to make
+ * the Grammar LL(1), and is left out of the CST and verbose mode.
+ *
+ * @author Tim Polizzi
+ */
+public enum NonTerminal implements GrammarSymbol {
+  PROGRAM("Program", "parseProgram"),
+  BLOCK("Block", "block"),
+  STMT_LIST("StmtList", "statementList"),
+  STMT("Stmt", "statement"),
+  PRINT_STMT("PrintStmt", "printStatement"),
+  ASSIGN_STMT("AssignStmt", "assignmentStatement"),
+  VAR_DECL("VarDecl", "varDecl"),
+  WHILE_STMT("WhileStmt", "whileStatement"),
+  IF_STMT("IfStmt", "ifStatement"),
+  EXPR("Expr", "expression"),
+  INT_EXPR("IntExpr", "intExpression"),
+  INT_TAIL("IntTail", null),
+  STR_EXPR("StrExpr", "stringExpression"),
+  BOOL_EXPR("BoolExpr", "booleanExpression"),
+  ID("ID", "id"),
+  CHAR_LIST("CharList", "characterList"),
+  TYPE("type", "type"),
+  CHAR_VAL("charVal", "characterValue"),
+  SPACE("space", "space"),
+  DIGIT("intVal", "digit"),
+  BOOL_OP("BoolOp", "booleanOperator"),
+  BOOL_VAL("boolVal", "booleanValue"),
+  INT_OP("intOp", "integerOperator");
+
+  private final String label;
+  private final String method;
+
+  NonTerminal(String label, String method) {
+    this.label = label;
+    this.method = method;
+  }
+
+  /**
+   * Gets the label the nonterminal has in the CST.
+   *
+   * @return The label of the nonterminal.
+   */
+  public String getLabel() {
+    return label;
+  }
+
+  /**
+   * Gets the name verbose mode prints when the nonterminal is parsed.
+   *
+   * @return The name of the nonterminal's parse method.
+   */
+  public String getMethod() {
+    return method;
+  }
+
+  /**
+   * Checks if the nonterminal is one that only exists to make the Grammar LL(1).
+   *
+   * @return True if it is left out of the CST and verbose mode, false otherwise.
+   */
+  public boolean isTransparent() {
+    return method == null;
+  }
+}
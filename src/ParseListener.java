@@ -0,0 +1,29 @@
+/**
+ * Something that follows along with the Parser as it parses, so that it can build whatever it needs
+ * (a CST, an AST, a symbol table) out of the same pass over the tokens.
+ *
+ * @author Tim Polizzi
+ */
+public interface ParseListener {
+
+  /**
+   * Called when the Parser starts parsing a nonterminal.
+   *
+   * @param nonTerminal The nonterminal being parsed.
+   */
+  void enter(NonTerminal nonTerminal);
+
+  /**
+   * Called when the Parser matches a token.
+   *
+   * @param token The token that was matched.
+   */
+  void terminal(Token token);
+
+  /**
+   * Called when the Parser is done parsing a nonterminal.
+   *
+   * @param nonTerminal The nonterminal that was parsed.
+   */
+  void exit(NonTerminal nonTerminal);
+}
@@ -1,5 +1,10 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
  * A parser for Alan Labouseur's Compilers class.
@@ -8,31 +13,62 @@ import java.util.regex.Pattern;
  */
 public class Parser {
 
-  private List<Token> tokenList;
+  private static final TokenKind[] TERMINALS = TokenKind.values();
+  private static final NonTerminal[] NON_TERMINALS = NonTerminal.values();
+
+  // Where the nonterminals, and the markers for finishing them, start on the parse stack
+  private static final int NON_TERMINAL = TERMINALS.length;
+  private static final int EXIT = NON_TERMINAL + NON_TERMINALS.length;
+
+  private Grammar grammar;
+  private int[] stack;
+  private int top;
+
+  private TokenCursor cursor;
   private boolean verbose;
   private boolean fail;
   private int errCount;
   private boolean success;
   private int programNo;
-  private SyntaxTree tree;
+  private CstBuilder cst;
+  private List<ParseListener> listeners;
 
   /**
    * Alan you really like giving me brain damage.
    *
-   * This program works by recursively combining trees with size 1 to make a big tree.
+   * This program works by walking the tokens once and telling every listener what it finds, so the
+   * CST, the AST and the symbol table all get built out of the same pass. The parsing itself is
+   * done off of the LL(1) table of the Grammar.
    *
    * @param programNo The numerical identifier of which program is being parsed.
-   * @param tokenList The list of tokens that has been returned from the Lexer.
+   * @param tokens The tokens that have been returned from the Lexer.
    * @param verbose The boolean value that determines if verbose mode is on.
-   */
-  public Parser(int programNo, List<Token> tokenList, boolean verbose) {
-    this.tokenList = tokenList;
+   * @param buildCst The boolean value that determines if the CST is built. Without it, and without
+   * any listeners, the Parser only recognizes the program: it reports any errors, but builds no
+   * SyntaxTree or Node at all. The Compiler does that when it is only checking programs.
+   * @param listeners Anything else that is to follow along with the parse.
+   */
+  public Parser(int programNo, TokenBuffer tokens, boolean verbose, boolean buildCst,
+      ParseListener... listeners) {
+    grammar = Grammar.LANGUAGE;
+    stack = new int[32];
+    top = 0;
+    cursor = new TokenCursor(tokens);
     this.verbose = verbose;
     this.programNo = programNo;
     fail = false;
     success = true;
     errCount = 0;
 
+    this.listeners = new ArrayList<>();
+    if (buildCst) {
+      cst = new CstBuilder();
+      this.listeners.add(cst);
+    }
+    for (ParseListener listener : listeners) {
+      this.listeners.add(listener);
+    }
+
     System.out.println("\nINFO Parser - Parsing program " + programNo + "...");
 
     verboseWriter("parse");
@@ -47,390 +83,79 @@ public class Parser {
   }
 
   /**
-   * Program -> Block $
-   */
-  public SyntaxTree parse() {
-    verboseWriter("parseProgram");
-    tree = new SyntaxTree("Program");
-
-    if (qol("L_BRACE")) {
-      tree.add(block());
-      match("EOP");
-      tree.add("$");
-    } else {
-      match("L_BRACE");
-    }
-    return tree;
-  }
-
-  /**
-   * Block -> { StmtList }
-   */
-  private SyntaxTree block() {
-    verboseWriter("block");
-    SyntaxTree blockTree = new SyntaxTree("Block");
-
-    if (qol("L_BRACE")) {
-      match("L_BRACE");
-      blockTree.add("{");
-      blockTree.add(stmtList());
-      match("R_BRACE");
-      blockTree.add("}");
-    }
-
-    return blockTree;
-  }
-
-  /**
-   * StmtList -> Stmt StmtList | lambda
-   */
-  private SyntaxTree stmtList() {
-    verboseWriter("statementList");
-    SyntaxTree stmtListTree = new SyntaxTree("StmtList");
-
-    // Check if next token is: {,if, print, <char item>, int, char, boolean, while
-    if (qol("L_BRACE|(PRINT|IF)_STMT|(CHAR|[a-z])|([ISB]_TYPE)|WHILE_LOOP")) {
-      stmtListTree.add(stmt());
-      stmtListTree.add(stmtList());
-    } else if (qol("R_BRACE")) {
-      // intentionally left blank for lambda set
-    }
-
-    return stmtListTree;
-  }
-
-  /**
-   * Stmt -> PrintStmt | AssignStmt | VarDecl | WhileStmt | IfStmt | Block
-   */
-  private SyntaxTree stmt() {
-    SyntaxTree stmtTree = new SyntaxTree("Stmt");
-    verboseWriter("statement");
-
-    if (qol("PRINT_STMT")) {
-      stmtTree.add(printStmt());
-
-    } else if (qol("[a-z]|CHAR")) {
-      stmtTree.add(assignStmt());
-
-    } else if (qol("[ISB]_TYPE")) {
-      stmtTree.add(varDecl());
-
-    } else if (qol("WHILE_LOOP")) {
-      stmtTree.add(whileStmt());
-
-    } else if (qol("IF_STMT")) {
-      stmtTree.add(ifStmt());
-
-    } else if (qol("L_BRACE")) {
-      stmtTree.add(block());
-
-    }
-
-    return stmtTree;
-  }
-
-  /**
-   * PrintStmt -> print ( Expr )
-   */
-  private SyntaxTree printStmt() {
-    verboseWriter("printStatement");
-    SyntaxTree printStmtTree = new SyntaxTree("PrintStmt");
-
-    if (qol("PRINT_STMT")) {
-      match("PRINT_STMT");
-      printStmtTree.add("print");
-      match("L_PAREN");
-      printStmtTree.add("(");
-      printStmtTree.add(expr());
-      match("R_PAREN");
-      printStmtTree.add(")");
-    }
-
-    return printStmtTree;
-  }
-
-  /**
-   * AssignStmt -> id = Expr
-   */
-  private SyntaxTree assignStmt() {
-    verboseWriter("assignmentStatement");
-    SyntaxTree assignStmtTree = new SyntaxTree("AssignStmt");
-
-    if (qol("[a-z]|CHAR")) {
-      assignStmtTree.add(id());
-      match("ASSIGN_OP");
-      assignStmtTree.add("=");
-      assignStmtTree.add(expr());
-    }
-
-    return assignStmtTree;
-  }
-
-  /**
-   * VarDecl -> type id
-   */
-  private SyntaxTree varDecl() {
-    verboseWriter("varDecl");
-    SyntaxTree varDeclTree = new SyntaxTree("VarDecl");
-
-    if (qol("[ISB]_TYPE")) {
-      varDeclTree.add(type());
-      varDeclTree.add(id());
-    }
-
-    return varDeclTree;
-  }
-
-  /**
-   * WhileStmt -> while BoolExpr Block
-   */
-  private SyntaxTree whileStmt() {
-    verboseWriter("whileStatement");
-    SyntaxTree whileStmtTree = new SyntaxTree("WhileStmt");
-
-    if (qol("WHILE_LOOP")) {
-      match("WHILE_LOOP");
-      whileStmtTree.add("while");
-      whileStmtTree.add(boolExpr());
-      whileStmtTree.add(block());
-    }
-
-    return whileStmtTree;
-  }
-
-  /**
-   * IfStmt -> if BoolExpr Block
-   */
-  private SyntaxTree ifStmt() {
-    verboseWriter("ifStatement");
-    SyntaxTree ifStmtTree = new SyntaxTree("IfStmt");
-
-    if (qol("IF_STMT")) {
-      match("IF_STMT");
-      ifStmtTree.add("if");
-      ifStmtTree.add(boolExpr());
-      ifStmtTree.add(block());
-    }
-
-    return ifStmtTree;
-  }
-
-  /**
-   * Expr -> IntExpr | StrExpr | BoolExpr | ID
-   */
-  private SyntaxTree expr() {
-    verboseWriter("expression");
-    SyntaxTree exprTree = new SyntaxTree("Expr");
-
-    if (qol("INT|[0-9]")) {
-      exprTree.add(intExpr());
-    } else if (qol("STRING")) {
-      exprTree.add(strExpr());
-    } else if (qol("L_PAREN|[TF]_BOOL")) {
-      exprTree.add(boolExpr());
-    } else if (qol("[a-z]|CHAR")) {
-      exprTree.add(id());
-    }
-
-    return exprTree;
-  }
-
-  /**
-   * IntExpr -> digit intOp Expr | digit
-   */
-  private SyntaxTree intExpr() {
-    verboseWriter("intExpression");
-    SyntaxTree intExprTree = new SyntaxTree("IntExpr");
-
-    if (qol("[0-9]|INT") && Pattern
-        .matches("\\+|INT_OP", tokenList.get(1).getFlavor())) {
-      intExprTree.add(digit());
-      intExprTree.add(intOp());
-      intExprTree.add(expr());
-    } else if (qol("[0-9]|INT")) {
-      intExprTree.add(digit());
-    }
-
-    return intExprTree;
-  }
-
-  /**
-   * StrExpr -> " CharList "
-   */
-  private SyntaxTree strExpr() {
-    verboseWriter("stringExpression");
-    SyntaxTree strExprTree = new SyntaxTree("StrExpr");
-
-    if (qol("STRING")) {
-      match("STRING");
-      strExprTree.add("\"");
-      strExprTree.add(charList());
-      match("STRING");
-      strExprTree.add("\"");
-    }
-
-    return strExprTree;
-  }
-
-  /**
-   * BoolExpr -> ( Expr BoolOp Expr ) | BoolVal
-   */
-  private SyntaxTree boolExpr() {
-    verboseWriter("booleanExpression");
-    SyntaxTree boolExprTree = new SyntaxTree("BoolExpr");
-
-    if (qol("L_PAREN")) {
-      match("L_PAREN");
-      boolExprTree.add("(");
-      boolExprTree.add(expr());
-      boolExprTree.add(boolOp());
-      boolExprTree.add(expr());
-      match("R_PAREN");
-      boolExprTree.add(")");
-
-    } else if (qol("[TF]_BOOL")) {
-      boolExprTree.add(boolVal());
-    } else {
-      error("L_PAREN");
-    }
-
-    return boolExprTree;
-  }
-
-  /**
-   * ID -> CharVal
-   */
-  private SyntaxTree id() {
-    verboseWriter("id");
-    SyntaxTree idTree = new SyntaxTree("ID");
-
-    if (qol("[a-z]|CHAR")) {
-      idTree.add(charVal());
-    } else {
-      error("CHAR");
-    }
-
-    return idTree;
-  }
-
-  /**
-   * CharList -> CharVal CharList | space CharList | lambda
+   * Parses a program and builds its CST.
+   *
+   * @param programNo The numerical identifier of which program is being parsed.
+   * @param tokens The tokens that have been returned from the Lexer.
+   * @param verbose The boolean value that determines if verbose mode is on.
    */
-  private SyntaxTree charList() {
-    verboseWriter("characterList");
-    SyntaxTree charListTree = new SyntaxTree("CharList");
-
-    if (qol("[a-z]|CHAR")) {
-      charListTree.add(charVal());
-      charListTree.add(charList());
-
-    } else if (qol(" ")) {
-      charListTree.add(space());
-      charListTree.add(charList());
-
-    } else if (qol("STRING")) {
-      //intentionally left blank for lambda set
-    }
-
-    return charListTree;
+  public Parser(int programNo, TokenBuffer tokens, boolean verbose) {
+    this(programNo, tokens, verbose, true);
   }
 
   /**
-   * type -> int | string | boolean
-   */
-  private SyntaxTree type() {
-    verboseWriter("type");
-    SyntaxTree typeTree = new SyntaxTree("type");
-
-    if (qol("[ISB]_TYPE")) {
-      typeTree.add(pop().getOriginal());
-      return typeTree;
+   * Parses the program using the parse table of the Grammar. Rather than a method for every
+   * nonterminal, what is still to be matched is kept on a stack, so a long StmtList or CharList
+   * makes the stack longer instead of the Java call stack deeper.
+   *
+   * A nonterminal on the stack is replaced by the production the table gives for the current token,
+   * with a marker under it for when it is finished. A token on the stack is matched against the
+   * current token.
+   */
+  private void parse() {
+    push(NON_TERMINAL + grammar.getStart().ordinal());
+
+    while (top > 0) {
+      int symbol = stack[--top];
+
+      if (symbol >= EXIT) {
+        exit(NON_TERMINALS[symbol - EXIT]);
+      } else if (symbol >= NON_TERMINAL) {
+        expand(NON_TERMINALS[symbol - NON_TERMINAL]);
+      } else {
+        match(TERMINALS[symbol]);
+      }
     }
-    return null;
   }
 
   /**
-   * charVal -> a | b | c | ... | z
+   * Replaces a nonterminal with the production for the current token. If there is none the
+   * nonterminal matches nothing, which is an error unless it can be lambda or is one of the ones
+   * that has always quietly matched nothing.
    */
-  private SyntaxTree charVal() {
-    verboseWriter("characterValue");
-    SyntaxTree charValTree = new SyntaxTree("charVal");
-
-    if (qol("[a-z]|CHAR")) {
-      charValTree.add(pop().getOriginal());
-      return charValTree;
+  private void expand(NonTerminal nonTerminal) {
+    if (!nonTerminal.isTransparent()) {
+      enter(nonTerminal);
+      push(EXIT + nonTerminal.ordinal());
     }
-    return null;
-  }
 
-  /**
-   * space -> " "
-   */
-  private SyntaxTree space() {
-    verboseWriter("space");
-    SyntaxTree spaceTree = new SyntaxTree("space");
+    int production = grammar.predict(nonTerminal, cursor.peekKind());
 
-    if (qol(" ")) {
-      spaceTree.add(pop().getOriginal());
-      return spaceTree;
+    if (production == Grammar.NONE) {
+      if (!grammar.isNullable(nonTerminal) && grammar.getExpected(nonTerminal) != null) {
+        error(grammar.getExpected(nonTerminal));
+      }
+      return;
     }
-    return null;
-  }
-
-  /**
-   * digit -> 0 | 1 | 2 | 3 | 4 | 5 | 6 | 7 | 8 | 9
-   */
-  private SyntaxTree digit() {
-    verboseWriter("digit");
-    SyntaxTree digitTree = new SyntaxTree("intVal");
 
-    if (qol("[0-9]|INT")) {
-      digitTree.add(pop().getOriginal());
-      return digitTree;
+    GrammarSymbol[] body = grammar.getBody(production);
+    for (int i = body.length - 1; i >= 0; i--) {
+      if (body[i] instanceof NonTerminal) {
+        push(NON_TERMINAL + ((NonTerminal) body[i]).ordinal());
+      } else {
+        push(((TokenKind) body[i]).ordinal());
+      }
     }
-    return null;
   }
 
   /**
-   * boolOp -> == | !=
+   * Pushes a symbol onto the parse stack.
    */
-  private SyntaxTree boolOp() {
-    verboseWriter("booleanOperator");
-    SyntaxTree boolOpTree = new SyntaxTree("BoolOp");
-
-    if (qol("(NOT_)?EQUAL")) {
-      boolOpTree.add(pop().getOriginal());
-      return boolOpTree;
+  private void push(int symbol) {
+    if (top == stack.length) {
+      stack = Arrays.copyOf(stack, top * 2);
     }
-    return null;
-  }
-
-  /**
-   * boolVal -> true | false
-   */
-  private SyntaxTree boolVal() {
-    verboseWriter("booleanValue");
-    SyntaxTree boolValTree = new SyntaxTree("boolVal");
-
-    if (qol("[TF]_BOOL")) {
-      boolValTree.add(pop().getOriginal());
-      return boolValTree;
-    }
-    return null;
-  }
-
-  /**
-   * intOp -> +
-   */
-  private SyntaxTree intOp() {
-    verboseWriter("integerOperator");
-    SyntaxTree intOpTree = new SyntaxTree("intOp");
-
-    if (qol("INT_OP")) {
-      intOpTree.add(pop().getOriginal());
-      return intOpTree;
-    }
-    return null;
+    stack[top++] = symbol;
   }
 
   /**
@@ -438,12 +163,18 @@ public class Parser {
    *
    * @param expected The thing that was expected to be found, and wasn't.
    */
-  private void error(String expected) {
-    Token currentToken = peek(tokenList);
-    System.out.println(
-        "ERROR Parser - Expected [" + expected + "] got [" + currentToken.getFlavor()
-            + "] with value '" + currentToken.getOriginal() + "' on line " + currentToken
-            .getLine());
+  private void error(TokenKind expected) {
+    Token currentToken = cursor.peek();
+    if (currentToken == null) {
+      System.out.println("ERROR Parser - Expected [" + expected + "] got end of stream.");
+    } else {
+      // The line is shown too, so the error can be found without counting lines
+      int line = currentToken.getLine();
+      System.out.println(
+          "ERROR Parser - Expected [" + expected + "] got [" + currentToken.getFlavor()
+              + "] with value '" + currentToken.getOriginal() + "' on line " + line + ": "
+              + currentToken.getBuffer().lineText(line).trim());
+    }
 
     fail = true;
     errCount++;
@@ -452,61 +183,67 @@ public class Parser {
   /**
    * Look to match a terminal and kill everything if it doesn't.
    */
-  private List<Token> match(String toMatch) {
-    if (tokenList.size() < 1) {
-      System.out.println("ERROR Parser - Expected [" + toMatch + "] got end of stream.");
-      fail = true;
-      errCount++;
-      return null;
-    }
-    Token currentToken = peek(tokenList);
-    if (Pattern.matches(toMatch, currentToken.getFlavor())) {
+  private void match(TokenKind toMatch) {
+    if (cursor.peekKind() == toMatch) {
       //pop topmost token off of stack
-      pop();
+      terminal();
     } else {
       error(toMatch);
       //clears the stack
     }
-    return null;
   }
 
   /**
-   * sneak a look at the first item in the tokenlist
+   * Prints the method that would be printed in verbose mode if the program is in verbose mode.
+   *
+   * @param method The name of the method that would be printed.
    */
-  private Token peek(List<Token> tokenList) {
-    return tokenList.get(0);
+  private void verboseWriter(String method) {
+    if (verbose) {
+      System.out.println("DEBUG Parser - " + method + "()");
+    }
   }
 
   /**
-   * This is a method to make the code neater and stop my hair loss.
-   *
-   * @return A boolean that determines if a given regex matches the top of the tokenList
+   * Starts a nonterminal, telling the listeners about it. Once there has been an error the
+   * listeners are not told about anything else, since what comes after it is not a program they can
+   * build anything out of.
    */
-  private boolean qol(String regex) {
-    if(tokenList.size() < 1) {
-      return false;
+  private void enter(NonTerminal nonTerminal) {
+    verboseWriter(nonTerminal.getMethod());
+    if (fail) {
+      return;
+    }
+    for (ParseListener listener : listeners) {
+      listener.enter(nonTerminal);
     }
-    return Pattern.matches(regex, peek(tokenList).getFlavor());
   }
 
   /**
-   * Prints the method that would be printed in verbose mode if the program is in verbose mode.
-   *
-   * @param method The name of the method that would be printed.
+   * Moves the cursor past the current token, telling the listeners about it.
    */
-  private void verboseWriter(String method) {
-    if (verbose) {
-      System.out.println("DEBUG Parser - " + method + "()");
+  private void terminal() {
+    if (listeners.isEmpty() || fail) {
+      cursor.skip();
+      return;
+    }
+
+    Token token = cursor.advance();
+    for (ParseListener listener : listeners) {
+      listener.terminal(token);
     }
   }
 
   /**
-   * Pops the top item off of token list
-   *
-   * @return The topmost token of tokenlist
+   * Finishes a nonterminal, telling the listeners about it.
    */
-  private Token pop() {
-    return tokenList.remove(0);
+  private void exit(NonTerminal nonTerminal) {
+    if (fail) {
+      return;
+    }
+    for (ParseListener listener : listeners) {
+      listener.exit(nonTerminal);
+    }
   }
 
   /**
@@ -521,17 +258,33 @@ public class Parser {
   /**
    * Get the CST.
    *
-   * @return tree, the CST.
+   * @return tree, the CST, or null if it was not built.
    */
   public SyntaxTree getTree() {
-    return tree;
+    if (cst == null) {
+      return null;
+    }
+    return cst.getTree();
   }
 
   /**
-   * Prints the CST.
+   * Prints the CST, if it was built.
    */
   public void printTree() {
+    if (getTree() == null) {
+      return;
+    }
+
     System.out.println("\nINFO Parser - Printing CST for program " + programNo + "...");
-    System.out.println(tree.depthFirstTraversal());
+
+    // Written straight out rather than built up into one String first
+    Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+    try {
+      getTree().depthFirstTraversal(out);
+      out.flush();
+    } catch (IOException e) {
+      System.out.println("ERROR Parser - Could not print the CST: " + e.getMessage());
+    }
+    System.out.println();
   }
 }
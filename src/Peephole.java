@@ -0,0 +1,330 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A peephole optimizer for the machine code of the SAD Compiler for Alan Labouseur's compilers
+ * class. Code Generation writes the same few instructions for every statement of a kind, which
+ * leaves loads and stores that do nothing wherever two statements meet, such as a variable being
+ * set to 00 when it is declared and then straight away to what it is assigned.
+ *
+ * The code is decoded into a list of instructions, and every few instructions in a row are checked
+ * against a table of patterns, each of which says which instruction of them can be left out. This
+ * goes on until no pattern matches anywhere. It runs before the placeholders are filled in, so
+ * addresses are told apart by the variable they are for, and the jumps and branches are moved to
+ * still land on the same instruction. Nothing that is jumped or branched to is ever left out unless
+ * it is the first instruction of a pattern, and nothing is ever moved past it.
+ *
+ * @author Tim Polizzi
+ */
+public class Peephole {
+
+  private static final int LDA_CONST = 0xA9;
+  private static final int LDA_MEM = 0xAD;
+  private static final int STA = 0x8D;
+
+  // Any load into the accumulator, in a pattern
+  private static final int LOAD = -1;
+
+  // The opcode of a byte that is not an instruction
+  private static final int NOT_AN_OPCODE = -2;
+
+  // What an operand is for, which is the variable or string ID under these, or the byte itself
+  private static final long NONE = -1;
+  private static final long VARIABLE = 1L << 32;
+  private static final long STRING = 2L << 32;
+
+  // How many bytes each instruction of the machine takes up, by its opcode, or 0 if there is none
+  private static final int[] LENGTHS = new int[256];
+
+  static {
+    LENGTHS[0xA9] = 2;
+    LENGTHS[0xAD] = 3;
+    LENGTHS[0x8D] = 3;
+    LENGTHS[0x6D] = 3;
+    LENGTHS[0xA2] = 2;
+    LENGTHS[0xAE] = 3;
+    LENGTHS[0xA0] = 2;
+    LENGTHS[0xAC] = 3;
+    LENGTHS[0xEA] = 1;
+    LENGTHS[0x00] = 1;
+    LENGTHS[0xEC] = 3;
+    LENGTHS[0xD0] = 2;
+    LENGTHS[0xEE] = 3;
+    LENGTHS[0xFF] = 1;
+  }
+
+  /**
+   * The patterns, each of which is the opcodes of some instructions in a row, a check on their
+   * operands, and which of them is left out when both match.
+   */
+  private enum Pattern {
+    /**
+     * A store and then a load of what was just stored, which the accumulator already has.
+     */
+    STORE_RELOAD(1, STA, LDA_MEM) {
+      @Override
+      boolean holds(Instruction[] window) {
+        return window[0].sameOperand(window[1]);
+      }
+    },
+    /**
+     * A store of what was just stored to the same place.
+     */
+    STORE_AGAIN(1, STA, STA) {
+      @Override
+      boolean holds(Instruction[] window) {
+        return window[0].sameOperand(window[1]);
+      }
+    },
+    /**
+     * A load that is loaded over before anything is done with it.
+     */
+    DEAD_LOAD(0, LOAD, LOAD) {
+      @Override
+      boolean holds(Instruction[] window) {
+        return true;
+      }
+    },
+    /**
+     * A store that is stored over before anything could read it.
+     */
+    DEAD_STORE(0, STA, LOAD, STA) {
+      @Override
+      boolean holds(Instruction[] window) {
+        return window[0].sameOperand(window[2])
+            && !(window[1].opcode == LDA_MEM && window[1].sameOperand(window[0]));
+      }
+    },
+    /**
+     * A load of what the accumulator still has from the load before the store in between.
+     */
+    REPEATED_LOAD(2, LOAD, STA, LOAD) {
+      @Override
+      boolean holds(Instruction[] window) {
+        return window[0].opcode == window[2].opcode && window[0].sameOperand(window[2]);
+      }
+    };
+
+    private final int dropped;
+    private final int[] opcodes;
+
+    Pattern(int dropped, int... opcodes) {
+      this.dropped = dropped;
+      this.opcodes = opcodes;
+    }
+
+    abstract boolean holds(Instruction[] window);
+  }
+
+  /**
+   * An instruction that has been decoded, and what it loads, stores or compares.
+   */
+  private static class Instruction {
+
+    private int offset;
+    private int opcode;
+    private int length;
+    private boolean target;
+
+    // The variable or string the operand is for, or the byte it is, or NONE if it is not known
+    private long operand;
+
+    private boolean sameOperand(Instruction other) {
+      return operand != NONE && operand == other.operand;
+    }
+
+    private boolean loads() {
+      return opcode == LDA_CONST || opcode == LDA_MEM;
+    }
+  }
+
+  private CodeBuffer code;
+  private List<Instruction> instructions;
+
+  // The instructions either side of each one that has not been left out, by index
+  private int[] next;
+  private int[] previous;
+  private BitSet deleted;
+  private int saved;
+
+  /**
+   * Optimizes machine code, leaving out what the patterns say can be and moving the jumps to match.
+   *
+   * @param code The code, which has been written but not had its placeholders filled in yet.
+   * @param jumps The jumps of the code, which have all been set.
+   */
+  public Peephole(CodeBuffer code, JumpTable jumps) {
+    this.code = code;
+    deleted = new BitSet();
+    saved = 0;
+
+    BitSet targets = new BitSet();
+    for (String jump : jumps.getTemps()) {
+      if (jumps.getJump(jump) >= 0) {
+        targets.set(jumps.getJump(jump));
+      }
+    }
+    for (int target : code.getBranchTargets()) {
+      targets.set(target);
+    }
+
+    decode(targets);
+    optimize();
+
+    if (saved > 0) {
+      int[] moved = code.delete(deleted);
+      for (String jump : jumps.getTemps()) {
+        int distance = jumps.getJump(jump);
+        if (distance >= 0 && distance < moved.length) {
+          jumps.set(jump, moved[distance]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets how many bytes were left out of the code.
+   *
+   * @return The number of bytes.
+   */
+  public int getSaved() {
+    return saved;
+  }
+
+  /**
+   * Decodes the code into instructions. Anything that is not an instruction, or is a placeholder
+   * where an opcode should be, is kept as a single byte that no pattern matches.
+   */
+  private void decode(BitSet targets) {
+    instructions = new ArrayList<>();
+    int offset = 0;
+
+    while (offset < code.size()) {
+      Instruction instruction = new Instruction();
+      instruction.offset = offset;
+      instruction.opcode = code.isPlaceholder(offset) ? NOT_AN_OPCODE : code.get(offset);
+      instruction.length = instruction.opcode == NOT_AN_OPCODE ? 0 : LENGTHS[instruction.opcode];
+      if (instruction.length == 0 || offset + instruction.length > code.size()) {
+        instruction.opcode = NOT_AN_OPCODE;
+        instruction.length = 1;
+      }
+      instruction.target = targets.get(offset);
+      instruction.operand = operand(offset, instruction.length);
+
+      instructions.add(instruction);
+      offset += instruction.length;
+    }
+  }
+
+  /**
+   * Works out what the operand of an instruction is for.
+   */
+  private long operand(int offset, int length) {
+    if (length == 2) {
+      if (!code.isPlaceholder(offset + 1)) {
+        return code.get(offset + 1);
+      }
+      int string = code.getString(offset + 1);
+      return string >= 0 ? STRING | string : NONE;
+    }
+    if (length == 3) {
+      int variable = code.getVariable(offset + 1);
+      return variable >= 0 ? VARIABLE | variable : NONE;
+    }
+    return NONE;
+  }
+
+  /**
+   * Leaves out instructions until no pattern matches, going back over the instructions before each
+   * one that is left out, since they might match a pattern now. An instruction that is left out is
+   * only unlinked from the ones either side of it, and the code is moved up once at the end.
+   */
+  private void optimize() {
+    int count = instructions.size();
+    next = new int[count];
+    previous = new int[count];
+    for (int i = 0; i < count; i++) {
+      next[i] = i + 1;
+      previous[i] = i - 1;
+    }
+
+    int i = 0;
+
+    while (i < count) {
+      Pattern matched = match(i);
+
+      if (matched == null) {
+        i = next[i];
+        continue;
+      }
+
+      int at = i;
+      for (int j = 0; j < matched.dropped; j++) {
+        at = next[at];
+      }
+      Instruction dropped = instructions.get(at);
+      saved += dropped.length;
+      deleted.set(dropped.offset, dropped.offset + dropped.length);
+
+      int before = previous[at];
+      int after = next[at];
+      if (before >= 0) {
+        next[before] = after;
+      }
+      if (after < count) {
+        previous[after] = before;
+      }
+
+      // Whatever went to it now goes to the instruction after it
+      if (dropped.target && after < count) {
+        instructions.get(after).target = true;
+      }
+
+      // Back up to two instructions before where the pattern started
+      int back = at == i ? after : i;
+      int steps = 2;
+      if (back == count) {
+        back = before;
+        steps--;
+      }
+      while (steps > 0 && back >= 0 && previous[back] >= 0) {
+        back = previous[back];
+        steps--;
+      }
+      i = back < 0 ? count : back;
+    }
+  }
+
+  /**
+   * Finds the first pattern that matches the instructions that have not been left out, starting at
+   * one of them.
+   *
+   * @return The pattern, or null if none of them match.
+   */
+  private Pattern match(int start) {
+    for (Pattern pattern : Pattern.values()) {
+      Instruction[] window = new Instruction[pattern.opcodes.length];
+      boolean matches = true;
+      int at = start;
+
+      for (int j = 0; j < window.length && matches; j++) {
+        if (at >= instructions.size()) {
+          matches = false;
+          break;
+        }
+        window[j] = instructions.get(at);
+        at = next[at];
+        int opcode = pattern.opcodes[j];
+
+        matches = (opcode == LOAD ? window[j].loads() : window[j].opcode == opcode)
+            && (j == 0 || !window[j].target);
+      }
+
+      if (matches && pattern.holds(window)) {
+        return pattern;
+      }
+    }
+    return null;
+  }
+}
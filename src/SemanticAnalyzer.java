@@ -1,19 +1,37 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * A Semantic Analyzer for the SAD Compiler for Alan Labouseur's compilers class.
  *
  * @author Tim Polizzi
  */
-public class SemanticAnalyzer {
+public class SemanticAnalyzer implements ParseListener {
+
+  /**
+   * How many parse events a Block has to have before it is worth analyzing on another thread.
+   */
+  private static final int PARALLEL_THRESHOLD = 4096;
+
+  private static final NonTerminal[] NON_TERMINALS = NonTerminal.values();
+
+  // Where the events for finishing a nonterminal, and for tokens, start in a recorded Block
+  private static final int EXIT = NON_TERMINALS.length;
+  private static final int TERMINAL = EXIT + NON_TERMINALS.length;
 
-  private List<Token> tokenList;
   private SyntaxTree ast;
   private SymbolTable symbols;
 
-  private boolean success;
   private boolean verbose;
 
   private int errCount;
@@ -21,462 +39,662 @@ public class SemanticAnalyzer {
   private int programNo;
   private int scope;
 
+  private StringBuilder log;
+  private List<LogPart> logParts;
+  private Deque<SyntaxTree> open;
+  private NonTerminal statement;
+  private Token typeToken;
+  private Token idToken;
+  private StringBuilder string;
+
+  private Deque<Type> types;
+  private Deque<Integer> marks;
+  private int exprDepth;
+  private int nesting;
+
+  private DefUseIndex defUse;
+  private BitSet assigned;
+  private BitSet warned;
+  private Deque<Branch> branches;
+
+  private AstTermFactory terms;
+  private Deque<List<AstTerm>> openTerms;
+  private AstTerm term;
+
+  private ForkJoinPool pool;
+  private NonTerminal lastEntered;
+  private boolean replaying;
+  private int[] recorded;
+  private int recordedSize;
+  private int recordDepth;
+  private TokenBuffer buffer;
+  private Deque<Pending> pending;
+  private int forks;
+  private Deque<Integer> blockForks;
+  private int outerLimit;
+
+  // The symbols from outside of a Block analyzed on its own that it used or assigned, which are
+  // only marked once it is joined, so that they are never touched from another thread
+  private List<SymbolItem> usedOuter;
+  private List<SymbolItem> assignedOuter;
+
   /**
-   * Taking a list of tokens, create a AST and then analyze it for scope and type errors.
+   * Creates a SemanticAnalyzer that follows along with the Parser, building the AST out of the
+   * tokens it matches and analyzing it for scope and type errors as it goes. Everything it finds is
+   * held onto until printAnalysis, so it still shows up after the Parser's output.
    *
-   * @param tokenList is the list of tokens used to generate the AST.
+   * @param programNo The numerical identifier of which program is being analyzed.
+   * @param verbose The boolean value that determines if verbose mode is on.
+   * @param terms The factory the AST is also made into shared AstTerms with, or null if it is not.
+   * @param parallel The boolean value that determines if large Blocks that are statements of their
+   * own are analyzed on a ForkJoinPool while the rest of the program is. It has no effect with
+   * AstTerms, which are only made one at a time.
    */
-  public SemanticAnalyzer(int programNo, List<Token> tokenList, boolean verbose) {
-    this.tokenList = tokenList;
+  public SemanticAnalyzer(int programNo, boolean verbose, AstTermFactory terms, boolean parallel) {
     this.verbose = verbose;
     this.programNo = programNo;
 
     symbols = new SymbolTable();
-    success = true;
     errCount = 0;
     warnCount = 0;
     scope = -1; // Sure this is a bad idea, however it should allow scope to be 0 at start and go up
 
-    System.out.println("\nINFO Semantic Analysis - Analyzing program " + programNo + "...");
+    logParts = new ArrayList<>();
+    log = newLogPart();
+    open = new ArrayDeque<>();
+    types = new ArrayDeque<>();
+    marks = new ArrayDeque<>();
+    exprDepth = 0;
+    nesting = 0;
+    defUse = new DefUseIndex();
+    assigned = new BitSet();
+    warned = new BitSet();
+    branches = new ArrayDeque<>();
+    this.terms = terms;
+    openTerms = new ArrayDeque<>();
+
+    pool = parallel && terms == null ? ForkJoinPool.commonPool() : null;
+    replaying = false;
+    recordDepth = 0;
+    pending = new ArrayDeque<>();
+    forks = 0;
+    blockForks = new ArrayDeque<>();
+    outerLimit = 0;
+    usedOuter = new ArrayList<>();
+    assignedOuter = new ArrayList<>();
+  }
 
-    ast = block();
+  /**
+   * Creates a SemanticAnalyzer that follows along with the Parser, one statement at a time.
+   *
+   * @param programNo The numerical identifier of which program is being analyzed.
+   * @param verbose The boolean value that determines if verbose mode is on.
+   * @param terms The factory the AST is also made into shared AstTerms with, or null if it is not.
+   */
+  public SemanticAnalyzer(int programNo, boolean verbose, AstTermFactory terms) {
+    this(programNo, verbose, terms, false);
+  }
 
-    if (errCount != 0) {
-      success = false;
-      System.out.println("INFO Semantic Analysis - Analysis failed with " + errCount + " error(s)");
-    } else {
-      System.out.println(
-          "INFO Semantic Analysis - Analysis completed successfully with " + warnCount
-              + " warning(s)");
-    }
+  /**
+   * Creates a SemanticAnalyzer that only builds the AST.
+   *
+   * @param programNo The numerical identifier of which program is being analyzed.
+   * @param verbose The boolean value that determines if verbose mode is on.
+   */
+  public SemanticAnalyzer(int programNo, boolean verbose) {
+    this(programNo, verbose, null);
   }
 
   /**
-   * Used to add a block, and adds a new scope.
+   * Creates a SemanticAnalyzer for a Block that is analyzed apart from the rest of its program. It
+   * starts out seeing what the outer SemanticAnalyzer could see right before the Block, and is
+   * merged back into it by join.
+   *
+   * @param outer The SemanticAnalyzer the Block is in.
+   * @param firstScopeId The ID of the Block's scope.
+   * @param firstIndex The index of the first symbol declared in the Block. Every symbol with a
+   * lower index is one from outside of it.
    */
-  private SyntaxTree block() {
-    SyntaxTree blockTree = new SyntaxTree("Block");
-    verboseWriter("Block");
+  private SemanticAnalyzer(SemanticAnalyzer outer, int firstScopeId, int firstIndex) {
+    this(outer.programNo, outer.verbose, null, false);
 
-    if (qol("L_BRACE")) {
-      scope++;
-      match("L_BRACE");
-      stmt(blockTree);
+    symbols = new SymbolTable(outer.symbols, firstScopeId, firstIndex);
+    scope = outer.scope;
+    assigned = (BitSet) outer.assigned.clone();
+    warned = (BitSet) outer.warned.clone();
+    outerLimit = firstIndex;
+  }
 
-    } else {
-      match("L_BRACE");
-    }
+  /**
+   * A Block that is being analyzed on its own, and where everything it finds goes once it is done.
+   */
+  private static class Pending {
 
-    bestPractices();
+    private ForkJoinTask<SemanticAnalyzer> result;
+    private SyntaxTree tree;
+    private int symbolPosition;
+    private int[] defUsePosition;
+    private LogPart log;
 
-    scope--;
-    match("R_BRACE");
+    // How many Blocks were started on their own before this one
+    private int fork;
 
-    return blockTree;
+    // The warnings about variables used after the Block started, before it was joined, which only
+    // hold up if it does not assign them either
+    private List<LogPart> uses = new ArrayList<>();
   }
 
   /**
-   * Stmt -> PrintStmt | AssignStmt | VarDecl | WhileStmt | IfStmt | Block
+   * What was certainly assigned before an if or while, which is all that is certain after it.
    */
-  private void stmt(SyntaxTree parent) {
-    //noinspection DuplicatedCode
-    if (qol("PRINT_STMT")) {
-      parent.add(printStmt());
+  private static class Branch {
 
-    } else if (qol("[a-z]|CHAR")) {
-      parent.add(assignStmt());
+    private BitSet assigned;
 
-    } else if (qol("[ISB]_TYPE")) {
-      parent.add(varDecl());
+    // How many Blocks had been started on their own before the if or while. What they assign is
+    // certain after it too, even though they may only be joined while it is being analyzed.
+    private int forks;
+  }
 
-    } else if (qol("WHILE_LOOP")) {
-      parent.add(whileStmt());
+  /**
+   * A piece of the output of the analysis. Most are just text, but a warning about a variable that
+   * may not have been assigned yet, found in a Block that was analyzed on its own or while one was,
+   * is held in a piece of its own: whether it holds up depends on the Blocks that were before it.
+   */
+  private static class LogPart {
 
-    } else if (qol("IF_STMT")) {
-      parent.add(ifStmt());
+    private final StringBuilder text = new StringBuilder();
+    private int var = -1;
 
-    } else if (qol("L_BRACE")) {
-      parent.add(block());
-    }
+    // The warning, until it is known whether it holds up
+    private String held;
+  }
 
-    if (qol("L_BRACE|(PRINT|IF)_STMT|(CHAR|[a-z])|([ISB]_TYPE)|WHILE_LOOP")) {
-      stmt(parent);
+  /**
+   * Opens a Block, which adds a new scope, or a statement, which gets a tree in the AST.
+   */
+  @Override
+  public void enter(NonTerminal nonTerminal) {
+    if (record(nonTerminal.ordinal())) {
+      return;
+    }
+    if (nonTerminal == NonTerminal.BLOCK && pool != null && !replaying
+        && lastEntered == NonTerminal.STMT && !open.isEmpty()) {
+      // A Block that is a statement of its own might be worth analyzing apart from the rest
+      recorded = new int[64];
+      recorded[0] = nonTerminal.ordinal();
+      recordedSize = 1;
+      recordDepth = 1;
+      return;
+    }
+    lastEntered = nonTerminal;
+
+    switch (nonTerminal) {
+      case BLOCK:
+        verboseWriter("Block");
+        scope++;
+        blockForks.push(forks);
+        int scopeId = symbols.enterScope();
+        start(AstKind.BLOCK);
+        open.peek().setStartedScope(open.peek().getRoot(), scopeId);
+        break;
+      case PRINT_STMT:
+        verboseWriter("printStatement");
+        start(AstKind.PRINT_STMT);
+        marks.push(types.size());
+        break;
+      case ASSIGN_STMT:
+        verboseWriter("assignmentStatement");
+        start(AstKind.ASSIGN_STMT);
+        marks.push(types.size());
+        statement = nonTerminal;
+        idToken = null; //Name of the variable to be assigned
+        break;
+      case VAR_DECL:
+        verboseWriter("varDecl");
+        start(AstKind.VAR_DECL);
+        statement = nonTerminal;
+        typeToken = null; //The type of the declared variable
+        idToken = null; //Name of the declared variable
+        break;
+      case WHILE_STMT:
+        verboseWriter("whileStatement");
+        start(AstKind.WHILE_STMT);
+        marks.push(types.size());
+        branch();
+        break;
+      case IF_STMT:
+        verboseWriter("ifStatement");
+        start(AstKind.IF_STMT);
+        marks.push(types.size());
+        branch();
+        break;
+      case EXPR:
+        exprDepth++;
+        marks.push(types.size());
+        break;
+      case INT_EXPR:
+        marks.push(types.size());
+        break;
+      case BOOL_EXPR:
+        nesting++;
+        marks.push(types.size());
+        break;
+      case STR_EXPR:
+        // Because the CharList is a list of CHAR tokens, it is collected into a single string
+        string = new StringBuilder("[");
+        break;
+      default:
+        break;
     }
   }
 
   /**
-   * PrintStmt -> print ( Expr )
+   * Adds the tokens that mean something (everything but the punctuation and keywords) to the
+   * statement they are in.
    */
-  private SyntaxTree printStmt() {
-    SyntaxTree printStmtTree = new SyntaxTree("Print Statement");
-    verboseWriter("printStatement");
+  @Override
+  public void terminal(Token token) {
+    buffer = token.getBuffer();
+    if (record(TERMINAL + token.getIndex())) {
+      return;
+    }
 
-    if (qol("PRINT_STMT")) {
-      match("PRINT_STMT");
-      match("L_PAREN");
-      expr(printStmtTree);
-      match("R_PAREN");
+    if (string != null) {
+      if (token.getKind() == TokenKind.CHAR) {
+        string.append(token.getOriginal());
+      }
+      return;
     }
 
-    return printStmtTree;
+    switch (token.getKind()) {
+      case CHAR:
+      case INT:
+      case INT_OP:
+      case T_BOOL:
+      case F_BOOL:
+      case EQUAL:
+      case NOT_EQUAL:
+      case I_TYPE:
+      case S_TYPE:
+      case B_TYPE:
+        Node leaf = open.peek().add(token);
+        if (exprDepth > 0) {
+          open.peek().setNesting(leaf, nesting);
+          operand(leaf, token);
+        }
+        leafTerm(AstKind.of(token.getKind()), token.getOriginal());
+
+        if (statement == NonTerminal.ASSIGN_STMT) {
+          if (idToken == null) {
+            idToken = token;
+          } else {
+            used(token, leaf);
+          }
+        } else if (statement == NonTerminal.VAR_DECL) {
+          if (typeToken == null) {
+            typeToken = token;
+          } else {
+            idToken = token;
+          }
+        } else {
+          used(token, leaf);
+        }
+        break;
+      default:
+        break;
+    }
   }
 
   /**
-   * AssignStmt -> id = Expr
+   * Closes a Block or statement, running the checks that go with it.
    */
-  private SyntaxTree assignStmt() {
-    SyntaxTree assignStmtTree = new SyntaxTree("Assignment Statement");
-    verboseWriter("assignmentStatement");
-
-    Token idToken = null;
-    List<Token> exprTokens = null;
-
-    if (qol("[a-z]|CHAR")) {
-      idToken = terminal(assignStmtTree); //Name of the variable to be assigned
-      match("ASSIGN_OP");
-      exprTokens = expr(assignStmtTree); //Value the variable is to be assigned to
+  @Override
+  public void exit(NonTerminal nonTerminal) {
+    if (record(EXIT + nonTerminal.ordinal())) {
+      if (recordDepth == 0) {
+        finishRecording();
+      }
+      return;
     }
 
-    if (!typeCheck(idToken, exprTokens, assignStmtTree.getRoot())) {
-      return assignStmtTree;
+    switch (nonTerminal) {
+      case BLOCK:
+        // Blocks started on their own inside of it can use or assign its variables
+        if (forks > blockForks.pop()) {
+          join();
+        }
+        bestPractices();
+        scope--;
+        symbols.exitScope();
+        close();
+        break;
+      case ASSIGN_STMT:
+        assignStmt(statementType());
+        statement = null;
+        close();
+        break;
+      case VAR_DECL:
+        varDecl();
+        statement = null;
+        close();
+        break;
+      case PRINT_STMT:
+        statementType();
+        close();
+        break;
+      case WHILE_STMT:
+      case IF_STMT:
+        // The Block might never run, so only what was assigned before it is certain after it
+        assigned = branches.pop().assigned;
+        statementType();
+        close();
+        break;
+      case EXPR:
+        exprDepth--;
+        types.push(exprType(nonTerminal));
+        break;
+      case INT_EXPR:
+        types.push(exprType(nonTerminal));
+        break;
+      case BOOL_EXPR:
+        nesting--;
+        types.push(exprType(nonTerminal));
+        break;
+      case STR_EXPR:
+        Node leaf = open.peek().add(AstKind.STRING, string.append("]").toString());
+        open.peek().setType(leaf, Type.STRING);
+        open.peek().setNesting(leaf, nesting);
+        types.push(Type.STRING);
+        leafTerm(AstKind.STRING, string.toString());
+        string = null;
+        break;
+      default:
+        break;
     }
+  }
 
-    String varValue = assignStmtTree.getRoot().getChildren().get(1).getVal();
-
-    if (!Pattern.matches("^\\[.*", varValue)) {
-      symbols.activeSymbol(idToken.getOriginal(), scope).setVal(slapTogether(exprTokens));
-    } else {
-      symbols.activeSymbol(idToken.getOriginal(), scope).setVal(varValue);
+  /**
+   * Works out the type of a leaf of an expression, keeping it on the leaf and on the stack of
+   * operands. Operators have no type of their own, and are left for exprType.
+   */
+  private void operand(Node leaf, Token token) {
+    Type type;
+
+    switch (token.getKind()) {
+      case INT:
+        type = Type.INT;
+        break;
+      case T_BOOL:
+      case F_BOOL:
+        type = Type.BOOLEAN;
+        break;
+      case CHAR:
+        SymbolItem item = symbols.lookup(token.getOriginal());
+        type = item == null ? Type.ERROR : Type.of(item.getType());
+        break;
+      default:
+        return;
     }
 
-    return assignStmtTree;
+    open.peek().setType(leaf, type);
+    types.push(type);
   }
 
   /**
-   * VarDecl -> type id
+   * Works out the type of an expression that is finishing out of the types of its operands, which
+   * were worked out as each of them finished. Every expression is only looked at the once, so this
+   * is never more than a couple of comparisons.
+   *
+   * IntExpr -> digit intop Expr, where Expr has to be an int
+   * BooleanExpr -> ( Expr boolop Expr ), where both Exprs have to be the same type
    */
-  private SyntaxTree varDecl() {
-    SyntaxTree varDeclTree = new SyntaxTree("Variable Declaration");
-    verboseWriter("varDecl");
-
-    Token typeToken = null;
-    Token idToken = null;
+  private Type exprType(NonTerminal nonTerminal) {
+    Type[] operands = operands();
 
-    if (qol("[ISB]_TYPE")) {
-      typeToken = terminal(varDeclTree); //The type of the declared variable
-      idToken = terminal(varDeclTree); //Name of the declared variable
-      if (!checkScope(idToken, typeToken)) {
-        return varDeclTree;
+    if (operands.length == 1) {
+      return operands[0];
+    }
+    if (operands.length == 2) {
+      if (nonTerminal == NonTerminal.INT_EXPR) {
+        if (operands[0] == Type.INT && operands[1] == Type.INT) {
+          return Type.INT;
+        }
+      } else if (nonTerminal == NonTerminal.BOOL_EXPR) {
+        if (operands[0] == operands[1] && operands[0] != Type.ERROR) {
+          return Type.BOOLEAN;
+        }
       }
-      symbols.newSymbol(idToken.getOriginal(), typeToken.getOriginal(), null, scope,
-          idToken.getLine());
     }
-
-    return varDeclTree;
+    return Type.ERROR;
   }
 
   /**
-   * WhileStmt -> while BoolExpr Block
+   * Gets the type of the expression of the statement that is finishing, and keeps it on the
+   * statement.
+   *
+   * @return The type of the expression, or null if the statement had no expression.
    */
-  private SyntaxTree whileStmt() {
-    SyntaxTree whileStmtTree = new SyntaxTree("While Statement");
-    verboseWriter("whileStatement");
-
-    if (qol("WHILE_LOOP")) {
-      match("WHILE_LOOP");
-      boolExpr(whileStmtTree);
-      whileStmtTree.add(block());
-    }
+  private Type statementType() {
+    Type[] operands = operands();
+    Type type = operands.length == 1 ? operands[0] : null;
 
-    return whileStmtTree;
+    open.peek().setType(open.peek().getRoot(), type);
+    return type;
   }
 
   /**
-   * IfStmt -> if BoolExpr Block
+   * Takes the types that were worked out since the innermost expression or statement started.
    */
-  private SyntaxTree ifStmt() {
-    SyntaxTree ifStmtTree = new SyntaxTree("If Statement");
-    verboseWriter("ifStatement");
+  private Type[] operands() {
+    Type[] operands = new Type[types.size() - marks.pop()];
 
-    if (qol("IF_STMT")) {
-      match("IF_STMT");
-      boolExpr(ifStmtTree);
-      ifStmtTree.add(block());
+    for (int i = operands.length - 1; i >= 0; i--) {
+      operands[i] = types.pop();
     }
-
-    return ifStmtTree;
+    return operands;
   }
 
   /**
-   * Expr -> IntExpr | StrExpr | BoolExpr | ID
+   * Marks the variable a token refers to, if it is one, as having been used, and warns the first
+   * time it is used where it may not have been assigned a value yet.
    */
-  private List<Token> expr(SyntaxTree parent) {
-    List<Token> toReturn = new ArrayList<>();
-
-    if (qol("INT|[0-9]")) {
-      toReturn = intExpr(parent);
-    } else if (qol("STRING")) {
-      strExpr(parent);
-    } else if (qol("L_PAREN|[TF]_BOOL")) {
-      toReturn = boolExpr(parent);
-    } else if (qol("[a-z]|CHAR")) {
-      toReturn.add(terminal(parent));
+  private void used(Token token, Node leaf) {
+    if (token.getKind() == TokenKind.CHAR) {
+      SymbolItem item = symbols.lookup(token.getOriginal());
+      if (item != null) {
+        markUsed(item);
+        defUse.addUse(item.getIndex(), leaf.getIndex());
+
+        if (!assigned.get(item.getIndex()) && !warned.get(item.getIndex())) {
+          String message = "Warning: The variable " + item.getVar() + " on line " + token.getLine()
+              + " may be used before it has been assigned a value.";
+
+          if (!pending.isEmpty()) {
+            // A Block still being analyzed might be what assigns it, which join works out
+            LogPart part = new LogPart();
+            part.held = message;
+            part.var = item.getIndex();
+            logParts.add(part);
+            log = newLogPart();
+            pending.peekLast().uses.add(part);
+          } else if (item.getIndex() < outerLimit) {
+            warned.set(item.getIndex());
+            LogPart part = new LogPart();
+            part.text.append(message).append("\n");
+            part.var = item.getIndex();
+            logParts.add(part);
+            log = newLogPart();
+          } else {
+            warned.set(item.getIndex());
+            warnCount++;
+            report(message);
+          }
+        }
+      }
     }
-
-    return toReturn;
   }
 
   /**
-   * IntExpr -> digit intOp Expr | digit
+   * Marks a symbol as having been used, or holds onto it until join if it is from outside of the
+   * Block being analyzed on its own.
    */
-  private List<Token> intExpr(SyntaxTree parent) {
-    List<Token> toReturn = new ArrayList<>();
+  private void markUsed(SymbolItem item) {
+    if (item.getIndex() < outerLimit) {
+      usedOuter.add(item);
+    } else {
+      item.markUsed();
+    }
+  }
 
-    if (qol("[0-9]|INT") && Pattern
-        .matches("\\+|INT_OP", tokenList.get(1).getFlavor())) {
-      toReturn.add(terminal(parent)); // val
-      toReturn.add(terminal(parent)); // intOp (+)
-      toReturn.addAll(expr(parent));
-    } else if (qol("[0-9]|INT")) {
-      toReturn.add(terminal(parent));
+  /**
+   * Marks a symbol as having been assigned, or holds onto it until join if it is from outside of
+   * the Block being analyzed on its own.
+   */
+  private void markAssigned(SymbolItem item) {
+    if (item.getIndex() < outerLimit) {
+      assignedOuter.add(item);
+    } else {
+      item.markAssigned();
     }
+  }
 
-    return toReturn;
+  /**
+   * Holds onto what is certainly assigned before an if or while.
+   */
+  private void branch() {
+    Branch branch = new Branch();
+    branch.assigned = (BitSet) assigned.clone();
+    branch.forks = forks;
+    branches.push(branch);
   }
 
   /**
-   * StrExpr -> " CharList "
+   * Starts a new tree inside the innermost open tree, so that it never has to be copied into it.
    */
-  private String strExpr(SyntaxTree parent) {
-    String toReturn = "";
+  private void start(AstKind kind) {
+    SyntaxTree started;
 
-    if (qol("STRING")) {
-      match("STRING"); // add a string
-      toReturn = charList(parent);
-      match("STRING");
+    if (open.isEmpty()) {
+      started = new SyntaxTree(kind);
+      ast = started;
+    } else {
+      started = open.peek().addTree(kind);
     }
+    open.push(started);
 
-    return toReturn;
+    if (terms != null) {
+      openTerms.push(new ArrayList<>());
+    }
   }
 
   /**
-   * BoolExpr -> ( Expr BoolOp Expr ) | BoolVal
+   * Finishes the innermost open tree.
    */
-  private List<Token> boolExpr(SyntaxTree parent) {
-    List<Token> toReturn = new ArrayList<>();
+  private void close() {
+    SyntaxTree finished = open.pop();
 
-    if (qol("L_PAREN")) {
-      match("L_PAREN");
-      toReturn.addAll(expr(parent));
-      toReturn.add(terminal(parent)); // add a boolean operator (!= or ==)
-      toReturn.addAll(expr(parent));
-      match("R_PAREN");
+    if (terms != null) {
+      Node root = finished.getRoot();
+      AstTerm finishedTerm = terms.make(root.getKind(), root.getVal(), openTerms.pop());
 
-    } else if (qol("[TF]_BOOL")) {
-      toReturn.add(terminal(parent)); // add a boolean
+      if (openTerms.isEmpty()) {
+        term = finishedTerm;
+      } else {
+        openTerms.peek().add(finishedTerm);
+      }
     }
-
-    return toReturn;
   }
 
-  private String charList(SyntaxTree parent) {
-    String toReturn = charList("[");
-    toReturn += "]";
-
-    parent.add(toReturn);
-    return toReturn;
+  /**
+   * Adds the term for a leaf to the innermost open tree, if AstTerms are being made.
+   */
+  private void leafTerm(AstKind kind, String val) {
+    if (terms != null) {
+      openTerms.peek().add(terms.make(kind, val));
+    }
   }
 
   /**
-   * Because the CharList was previously treated as a list of CHAR tokens, it is now being changed
-   * to function as a single string. This is heck.
+   * AssignStmt -> id = Expr
    */
-  private String charList(String str) {
-    SyntaxTree falseParent = new SyntaxTree(""); // To not add the Chars to the main tree
-    Token charToken = null;
-
-    if (qol("[a-z]|CHAR")) {
-      charToken = terminal(falseParent);
-      str += charToken.getOriginal(); // add a character
-      return charList(str);
-
-    } else if (qol(" ")) {
-      charToken = terminal(falseParent);
-      str += charToken.getOriginal(); // add a space
-      return charList(str);
+  private void assignStmt(Type exprType) {
+    if (idToken == null || exprType == null) {
+      return;
+    }
 
-    } else if (qol("STRING")) {
-      //intentionally left blank for lambda set
+    if (!typeCheck(idToken, exprType)) {
+      return;
     }
 
-    return str;
+    SymbolItem item = symbols.lookup(idToken.getOriginal());
+    markAssigned(item);
+    assigned.set(item.getIndex());
+    defUse.addDef(item.getIndex(), open.peek().getRoot().getIndex());
   }
 
   /**
-   * pops the terminal
+   * VarDecl -> type id
    */
-  private Token terminal(SyntaxTree parent) {
-    Token termVal = pop();
-
-    parent.add(termVal.getOriginal());
+  private void varDecl() {
+    if (typeToken == null || idToken == null) {
+      return;
+    }
 
-    return termVal;
+    if (!checkScope(idToken, typeToken)) {
+      return;
+    }
+    symbols.newSymbol(idToken.getOriginal(), typeToken.getOriginal(), scope,
+        idToken.getLine());
   }
 
   /**
    * Checks a variable that is being assigned to see if it is the correct type to be assigned to the
    * variable, or if the variable has not been declared. (assignment trigger)
    *
-   * TODO: In case of assigning to a variable, grab it's type from the table
-   *
+   * @param id The variable being assigned to.
+   * @param exprType The type of the expression it is being assigned, which was already worked out.
    * @return True if it is correct, false otherwise.
    */
-  public boolean typeCheck(Token id, List<Token> childrenTokens, Node root) {
-    List<String> types = sameTypes(childrenTokens);
-    SymbolItem varType = symbols.activeSymbol(id.getOriginal(), scope);
+  public boolean typeCheck(Token id, Type exprType) {
+    SymbolItem varType = symbols.lookup(id.getOriginal());
 
     // What if the variable is not declared
     if (varType == null) {
       errCount++;
-      System.out.println("Error: The AssignOp " + id.getOriginal() + " on line "
+      report("Error: The AssignOp " + id.getOriginal() + " on line "
           + id.getLine() + " was used before being declared.");
       return false;
     }
 
     // What if the multiple types in an expression don't match
-    if (!varType.getType().equals("string") && types == null) {
+    if (exprType == Type.ERROR) {
       errCount++;
-      System.out.println("Error: The AssignOp expression " + id.getOriginal() + " on line "
+      report("Error: The AssignOp expression " + id.getOriginal() + " on line "
           + id.getLine() + " does not match the type of the declared variable " + varType
           .getType() + " " + id.getOriginal());
       return false;
     }
 
     // What if the type of the thing to be assigned doesn't match
-    if (!varType.getType().equals("string")
-        && !matches(types.get(0), varType.getType())) {
+    if (exprType != Type.of(varType.getType())) {
       return assignOpError(id);
     }
 
-    // Weird case
-    if (varType.getType().equals("string")) {
-      Node currentNode = root;
-      List<String> leaves = new ArrayList<>();
-
-      // Goal here is to grab all the possible terminals
-      for (Node n : currentNode.getChildren()) {
-        if (n.getChildren().size() > 0) {
-          typeCheck(id, childrenTokens, n);
-        } else {
-          leaves.add(n.getVal());
-        }
-      }
-
-      //remember those terminals? I'm gonna see if any of them AREN'T full of characters, AKA not strings
-      for (String item : leaves) {
-        if (item.matches("[\\W]")) {
-          return assignOpError(id);
-        }
-      }
-
-      //case where there is a declared string being initialized to not a string
-      if (types != null && types.get(0) != null) {
-        return assignOpError(id);
-      }
-
-      // . . . ngl I forgot what this one breaks
-//      if (types == null && leaves.size() > 1) {
-//        return assignOpError(id);
-//      }
-
-    }
-
     return true;
   }
 
-  private boolean matches(String type, String varType) {
-    boolean toReturn = false;
-
-    if (varType.matches("int|string|boolean")) {
-      if (type.matches(".*BOOL") && varType.equals("boolean")) {
-        toReturn = true;
-      } else if (varType.toUpperCase().equals(type)) {
-        toReturn = true;
-      }
-    }
-
-    return toReturn;
-  }
-
   /**
    * Hair-loss reduction method
    */
   private boolean assignOpError(Token id) {
     errCount++;
-    System.out.println("Error: The AssignOp " + id.getOriginal() + " on line "
+    report("Error: The AssignOp " + id.getOriginal() + " on line "
         + id.getLine() + " does not match the type of the declared variable " + symbols
-        .activeSymbol(id.getOriginal(), scope).getType() + " " + id.getOriginal());
+        .lookup(id.getOriginal()).getType() + " " + id.getOriginal());
     return false;
   }
 
-  /**
-   * List of string types of the tokens, or null if they are not the same types OR if there are no
-   * tokens.
-   */
-  private List<String> sameTypes(List<Token> tokenList) {
-    List<String> returnList = null;
-    String type = null;
-
-    for (int i = 0; i < tokenList.size(); i++) {
-      Token t = tokenList.get(i);
-
-      if (!Pattern.matches(".*OP|.*EQUAL", t.getFlavor())) {
-        if (type == null) {
-          type = t.getFlavor();
-          returnList = new ArrayList<>();
-          /* So if t is not the same type as another item break, unless t is a bool in which case
-           check if that item is too, or if there is a CHAR, which is actually a variable*/
-        } else if (!t.getFlavor().equals(type) && !t.getFlavor().equals("CHAR") &&
-            !(Pattern.matches(".*BOOL", t.getFlavor()) || Pattern.matches(".*BOOL", type))) {
-          return null;
-        }
-        returnList.add(t.getFlavor());
-      } else if (Pattern.matches(".*EQUAL", t.getFlavor())) {
-        type = boolRec(tokenList);
-      }
-    }
-
-    return returnList;
-  }
-
-  /**
-   * Goal is to find out if a boolean expression is legal
-   */
-  private String boolRec(List<Token> tokenList) {
-    String left = null;
-    String right = null;
-
-    for (int i = 0; i < tokenList.size(); i++) {
-      Token t = tokenList.get(i);
-
-      if (Pattern.matches(".*EQUAL", t.getFlavor())) {
-        left = tokenList.get(i - 1).getFlavor();
-        right = boolRec(tokenList.subList(i + 1, tokenList.size()));
-
-        if (left.equals(right) || (Pattern.matches(".*BOOL", left) && Pattern
-            .matches(".*BOOL", right))) {
-          return "BOOL";
-        }
-      }
-    }
-
-    if (tokenList.size() < 2) {
-      return tokenList.get(0).getFlavor();
-    }
-
-    return null;
-  }
-
   /**
    * Checks a variable to see if it is legal in the scope it is currently being attempted to be
    * declared in. (declaration trigger)
@@ -484,11 +702,11 @@ public class SemanticAnalyzer {
    * @return True if it is legal, false otherwise.
    */
   public boolean checkScope(Token id, Token type) {
-    SymbolItem activeSymbol = symbols.activeSymbol(id.getOriginal(), scope);
+    SymbolItem activeSymbol = symbols.lookupLocal(id.getOriginal());
 
-    if (activeSymbol != null && activeSymbol.getScope() == scope) {
+    if (activeSymbol != null) {
       errCount++;
-      System.out.println(
+      report(
           "Error: The " + type.getFlavor() + " " + id.getOriginal() + " on line "
               + id.getLine() + " is already declared in the scope.");
       return false;
@@ -498,117 +716,257 @@ public class SemanticAnalyzer {
   }
 
   /**
-   * Checks to see if variables have been unused, and if variables have been used without being
-   * assigned. (end of scope/block trigger)
+   * Checks to see if the variables declared in the scope that is ending have been left unassigned
+   * or unused. Only that scope's own symbols are looked at, and every one of them that has a
+   * problem is reported. (end of scope/block trigger)
    */
   public void bestPractices() {
-    List<SymbolItem> symbolList = symbols.getList();
-    for (SymbolItem item : symbolList) {
-      if (item.getScope() == scope && item.getVal() == null) {
+    for (SymbolItem item : symbols.getScopeSymbols()) {
+      if (!item.isAssigned()) {
         warnCount++;
-        System.out.println(
+        report(
             "Warning: The variable " + item.getVar() + " which was declared on line " + item
                 .getPos() + " has not been assigned a value.");
-        return;
+      }
+      if (!item.isUsed()) {
+        warnCount++;
+        report(
+            "Warning: The variable " + item.getVar() + " which was declared on line " + item
+                .getPos() + " is never used.");
       }
     }
   }
 
   /**
-   * Error handling.
+   * Prints the method that would be printed in verbose mode if the program is in verbose mode.
    *
-   * @param expected The thing that was expected to be found, and wasn't.
+   * @param method The name of the method that would be printed.
    */
-  private void error(String expected) {
-    Token currentToken = peek(tokenList);
-    System.out.println(
-        "ERROR Parser - Expected [" + expected + "] got [" + currentToken.getFlavor()
-            + "] with value '" + currentToken.getOriginal() + "' on line " + currentToken
-            .getLine());
-
-//    fail = true;
-    errCount++;
+  private void verboseWriter(String method) {
+    if (verbose) {
+      report("DEBUG Semantic Analysis - " + method + "()");
+    }
   }
 
   /**
-   * Look to match a terminal and kill everything if it doesn't.
+   * did it work?
+   *
+   * @return y or n
    */
-  private void match(String toMatch) {
-    Token currentToken = peek(tokenList);
-    if (Pattern.matches(toMatch, currentToken.getFlavor())) {
-      //pop topmost token off of stack
-      pop();
-    } else {
-      error(toMatch);
-      //clears the stack
-    }
+  public boolean success() {
+    return errCount == 0;
   }
 
   /**
-   * sneak a look at the first item in the tokenlist
+   * Get the AST.
+   *
+   * @return tree, the AST.
    */
-  private Token peek(List<Token> tokenList) {
-    return tokenList.get(0);
+  public SyntaxTree getTree() {
+    return ast;
   }
 
   /**
-   * This is a method to make the code neater and stop my hair loss.
+   * Get the AST as a shared AstTerm.
    *
-   * @return A boolean that determines if a given regex matches the top of the tokenList
+   * @return term, or null if the SemanticAnalyzer was not given an AstTermFactory.
    */
-  private boolean qol(String regex) {
-    return Pattern.matches(regex, peek(tokenList).getFlavor());
+  public AstTerm getTerm() {
+    return term;
   }
 
   /**
-   * Prints the method that would be printed in verbose mode if the program is in verbose mode.
-   *
-   * @param method The name of the method that would be printed.
+   * Prints the results of the analysis.
    */
-  private void verboseWriter(String method) {
-    if (verbose) {
-      System.out.println("DEBUG Semantic Analysis - " + method + "()");
+  public void printAnalysis() {
+    System.out.println("\nINFO Semantic Analysis - Analyzing program " + programNo + "...");
+    for (LogPart part : logParts) {
+      System.out.print(part.text);
+    }
+
+    if (errCount != 0) {
+      System.out.println("INFO Semantic Analysis - Analysis failed with " + errCount + " error(s)");
+    } else {
+      System.out.println(
+          "INFO Semantic Analysis - Analysis completed successfully with " + warnCount
+              + " warning(s)");
     }
   }
 
   /**
-   * Pops the top item off of token list
+   * Adds the record of a parse event to the Block being recorded, if there is one.
    *
-   * @return The topmost token of tokenlist
+   * @return True if the event was recorded, false if it is to be analyzed now.
    */
-  private Token pop() {
-    return tokenList.remove(0);
+  private boolean record(int event) {
+    if (recordDepth == 0) {
+      return false;
+    }
+
+    if (event == NonTerminal.BLOCK.ordinal()) {
+      recordDepth++;
+    } else if (event == EXIT + NonTerminal.BLOCK.ordinal()) {
+      recordDepth--;
+    }
+
+    if (recordedSize == recorded.length) {
+      recorded = Arrays.copyOf(recorded, recordedSize * 2);
+    }
+    recorded[recordedSize++] = event;
+    return true;
   }
 
   /**
-   * did it work?
-   *
-   * @return y or n
+   * Analyzes a Block that has finished being recorded: on the ForkJoinPool if it is large enough to
+   * be worth it, and right away otherwise. Only the declarations before the Block can be seen from
+   * inside of it, so it needs nothing from the rest of the program but a copy of those.
    */
-  public boolean success() {
-    return success;
+  private void finishRecording() {
+    int[] events = recorded;
+    int size = recordedSize;
+    recorded = null;
+
+    if (size < PARALLEL_THRESHOLD) {
+      replaying = true;
+      replay(events, size);
+      replaying = false;
+      return;
+    }
+
+    int blocks = 0;
+    int decls = 0;
+    for (int i = 0; i < size; i++) {
+      if (events[i] == NonTerminal.BLOCK.ordinal()) {
+        blocks++;
+      } else if (events[i] == NonTerminal.VAR_DECL.ordinal()) {
+        decls++;
+      }
+    }
+
+    int firstScopeId = symbols.reserveScopes(blocks);
+    SemanticAnalyzer block = new SemanticAnalyzer(this, firstScopeId,
+        symbols.reserveIndices(decls));
+    TokenBuffer tokens = buffer;
+
+    Pending started = new Pending();
+    started.tree = open.peek().addTree(AstKind.BLOCK);
+    started.tree.setStartedScope(started.tree.getRoot(), firstScopeId);
+    started.symbolPosition = symbols.getList().size();
+    started.defUsePosition = defUse.position();
+    started.log = new LogPart();
+    started.fork = forks++;
+    logParts.add(started.log);
+    log = newLogPart();
+    started.result = pool.submit(() -> {
+      block.buffer = tokens;
+      block.replay(events, size);
+      return block;
+    });
+    pending.add(started);
   }
 
   /**
-   * Get the AST.
-   *
-   * @return tree, the AST.
+   * Analyzes the recorded parse events of a Block.
    */
-  public SyntaxTree getTree() {
-    return ast;
+  private void replay(int[] events, int size) {
+    for (int i = 0; i < size; i++) {
+      int event = events[i];
+
+      if (event >= TERMINAL) {
+        terminal(new Token(buffer, event - TERMINAL));
+      } else if (event >= EXIT) {
+        exit(NON_TERMINALS[event - EXIT]);
+      } else {
+        enter(NON_TERMINALS[event]);
+      }
+    }
   }
 
   /**
-   * Don't judge till you've tried it
+   * Waits for every Block that is being analyzed on its own, and merges what each of them found
+   * back in, in the order the Blocks are in. It is only called when a Block that started some of
+   * them ends, so nothing waits on them before it has to. A warning that a variable may not have
+   * been assigned yet, from one of the Blocks or from while it was being analyzed, only holds up if
+   * none of the Blocks before it assigned the variable either.
    */
-  private String slapTogether(List<Token> tokenList) {
-    String toReturn = "";
+  private void join() {
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    BitSet before = new BitSet();
+    int inserted = 0;
+    int[] defUseInserted = {0, 0};
+
+    while (!pending.isEmpty()) {
+      Pending done = pending.poll();
+      SemanticAnalyzer block = done.result.join();
+
+      for (LogPart part : block.logParts) {
+        if (part.var == -1) {
+          done.log.text.append(part.text);
+        } else if (!before.get(part.var) && !warned.get(part.var)) {
+          warned.set(part.var);
+          warnCount++;
+          done.log.text.append(part.text);
+        }
+      }
+      errCount += block.errCount;
+      warnCount += block.warnCount;
+      for (SymbolItem item : block.usedOuter) {
+        markUsed(item);
+      }
+      for (SymbolItem item : block.assignedOuter) {
+        markAssigned(item);
+      }
+
+      symbols.insertAll(done.symbolPosition + inserted, block.symbols.getList());
+      inserted += block.symbols.getList().size();
+      int[] defUsePosition = {done.defUsePosition[0] + defUseInserted[0],
+          done.defUsePosition[1] + defUseInserted[1]};
+      int[] blockSize = block.defUse.position();
+      defUse.insertAll(defUsePosition, block.defUse, done.tree.addAll(block.ast));
+      defUseInserted[0] += blockSize[0];
+      defUseInserted[1] += blockSize[1];
+      before.or(block.assigned);
+
+      // An if or while that started after the Block does not undo what it assigned
+      for (Branch branch : branches) {
+        if (branch.forks > done.fork) {
+          branch.assigned.or(block.assigned);
+        }
+      }
 
-    for (Token t : tokenList) {
-      toReturn += t.getOriginal() + " ";
+      for (LogPart part : done.uses) {
+        if (!before.get(part.var) && !warned.get(part.var)) {
+          warned.set(part.var);
+          warnCount++;
+          part.text.append(part.held).append("\n");
+        }
+      }
     }
 
-    return toReturn;
+    assigned.or(before);
+  }
+
+  /**
+   * Starts a new piece of the output, after everything so far.
+   *
+   * @return Where the new piece is written to.
+   */
+  private StringBuilder newLogPart() {
+    LogPart part = new LogPart();
+    logParts.add(part);
+    return part.text;
+  }
+
+  /**
+   * Holds onto a line of output until printAnalysis.
+   *
+   * @param message The line to be printed.
+   */
+  private void report(String message) {
+    log.append(message).append("\n");
   }
 
   /**
@@ -616,7 +974,16 @@ public class SemanticAnalyzer {
    */
   public void printTree() {
     System.out.println("\nINFO Semantic Analysis - Printing AST for program " + programNo + "...");
-    System.out.println(ast.depthFirstTraversal());
+
+    // Written straight out rather than built up into one String first
+    Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+    try {
+      ast.depthFirstTraversal(out);
+      out.flush();
+    } catch (IOException e) {
+      System.out.println("ERROR Semantic Analysis - Could not print the AST: " + e.getMessage());
+    }
+    System.out.println();
   }
 
   /**
@@ -630,4 +997,13 @@ public class SemanticAnalyzer {
     return symbols;
   }
 
+  /**
+   * Get where each variable is defined and read in the AST.
+   *
+   * @return defUse, which is indexed by the index of each SymbolItem.
+   */
+  public DefUseIndex getDefUse() {
+    return defUse;
+  }
+
 }
@@ -0,0 +1,166 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The string literals that Code Generation puts in the heap for the SAD Compiler for Alan
+ * Labouseur's compilers class.
+ *
+ * Each different string is only kept once, no matter how many times it is in the program. Since
+ * the strings end with a 00, one that is the end of another does not need any bytes of its own
+ * either, and just starts part way through the longer one. Where each string ends up is worked out
+ * the first time it is asked for, once every string has been added.
+ *
+ * @author Tim Polizzi
+ */
+public class StringPool {
+
+  private List<String> strings;
+  private Map<String, Integer> ids;
+
+  // Where each string starts in the bytes, or null if it has to be worked out again
+  private int[] offsets;
+  private byte[] bytes;
+  private int start;
+
+  /**
+   * Creates a new, empty StringPool.
+   */
+  public StringPool() {
+    strings = new ArrayList<>();
+    ids = new HashMap<>();
+    start = 0;
+  }
+
+  /**
+   * Adds a string, unless it has been added already.
+   *
+   * @param value The characters of the string, without its quotes.
+   * @return The ID of the string, which is the same for every string with the same characters.
+   */
+  public int add(String value) {
+    Integer id = ids.get(value);
+    if (id == null) {
+      id = strings.size();
+      strings.add(value);
+      ids.put(value, id);
+      offsets = null;
+    }
+    return id;
+  }
+
+  /**
+   * Lays out the strings, longest first, with each one that is the end of another put at the end of
+   * it instead of getting bytes of its own.
+   */
+  private void layout() {
+    int count = strings.size();
+    Integer[] order = new Integer[count];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+
+    // Sorted by their characters read backwards, a string that is the end of any other is right
+    // before one that it is the end of
+    Arrays.sort(order, this::compareEnds);
+    int[] within = new int[count];
+    for (int i = count - 1; i >= 0; i--) {
+      int id = order[i];
+      within[id] = id;
+      if (i + 1 < count && strings.get(order[i + 1]).endsWith(strings.get(id))) {
+        within[id] = within[order[i + 1]];
+      }
+    }
+
+    Arrays.sort(order, (a, b) -> strings.get(b).length() - strings.get(a).length());
+    offsets = new int[count];
+    int size = 0;
+    for (int id : order) {
+      if (within[id] == id) {
+        offsets[id] = size;
+        size += strings.get(id).length() + 1;
+      } else {
+        String outer = strings.get(within[id]);
+        offsets[id] = offsets[within[id]] + outer.length() - strings.get(id).length();
+      }
+    }
+
+    bytes = new byte[size];
+    for (int id : order) {
+      if (within[id] == id) {
+        String value = strings.get(id);
+        for (int i = 0; i < value.length(); i++) {
+          bytes[offsets[id] + i] = (byte) value.charAt(i);
+        }
+      }
+    }
+  }
+
+  /**
+   * Compares two strings by their characters read from the end.
+   */
+  private int compareEnds(int a, int b) {
+    String first = strings.get(a);
+    String second = strings.get(b);
+    int i = first.length() - 1;
+    int j = second.length() - 1;
+    while (i >= 0 && j >= 0) {
+      if (first.charAt(i) != second.charAt(j)) {
+        return first.charAt(i) - second.charAt(j);
+      }
+      i--;
+      j--;
+    }
+    return first.length() - second.length();
+  }
+
+  /**
+   * Gets how many bytes the strings take up in the heap.
+   *
+   * @return The number of bytes.
+   */
+  public int size() {
+    if (offsets == null) {
+      layout();
+    }
+    return bytes.length;
+  }
+
+  /**
+   * Sets where in memory the strings are put.
+   *
+   * @param start The address of the first byte of the strings.
+   */
+  public void setStart(int start) {
+    this.start = start;
+  }
+
+  /**
+   * Gets where a string is in memory.
+   *
+   * @param id The ID that add gave the string.
+   * @return The address of the first character of the string.
+   */
+  public int getAddress(int id) {
+    if (offsets == null) {
+      layout();
+    }
+    return start + offsets[id];
+  }
+
+  /**
+   * Writes the strings as they are to be put in memory.
+   *
+   * @param code Where the strings are written to.
+   */
+  public void writeTo(CodeBuffer code) {
+    if (offsets == null) {
+      layout();
+    }
+    for (byte b : bytes) {
+      code.emit(b);
+    }
+  }
+}
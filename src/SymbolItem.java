@@ -5,25 +5,34 @@ public class SymbolItem {
 
   private String var;
   private String type;
-  private String val;
   private int scope;
   private int pos;
+  private int scopeId;
+  private int index;
+  private boolean assigned;
+  private boolean used;
 
   /**
    * Creates a SymbolItem and requires the basic information of the symbol to be stored.
    *
    * @param var The string name and identifier of the variable that is to be stored.
    * @param type A string that shows the type of the variable stored.
-   * @param val A string that contains the initialized value of a variable.
    * @param scope The integer representing the scope that the variable is located in.
    * @param pos The integer containing the line number at which the symbol is represented on.
+   * @param scopeId The ID of the scope, which unlike scope is never shared with another block.
+   * @param index The number of the symbol in its table, which is its bit in a set of symbols.
    */
-  public SymbolItem(String var, String type, String val, int scope, int pos) {
+  public SymbolItem(String var, String type, int scope, int pos, int scopeId, int index) {
     this.var = var;
     this.type = type;
-    this.val = val;
     this.scope = scope;
     this.pos = pos;
+    this.scopeId = scopeId;
+    this.index = index;
+  }
+
+  public SymbolItem(String var, String type, int scope, int pos) {
+    this(var, type, scope, pos, scope, 0);
   }
 
   public String getVar() {
@@ -42,12 +51,28 @@ public class SymbolItem {
     return scope;
   }
 
-  public String getVal() {
-    return val;
+  public int getScopeId() {
+    return scopeId;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public void markAssigned() {
+    assigned = true;
+  }
+
+  public boolean isAssigned() {
+    return assigned;
+  }
+
+  public void markUsed() {
+    used = true;
   }
 
-  public void setVal(String newVal) {
-    val = newVal;
+  public boolean isUsed() {
+    return used;
   }
 
   /**
@@ -56,6 +81,7 @@ public class SymbolItem {
    * @return The string containing the symbol item
    */
   public String toString() {
-    return String.format("%1$-6s| %2$-8s| %3$-8s| %4$-6d| %5$-6s", var, type, scope, pos, val);
+    return String.format("%1$-6s| %2$-8s| %3$-8s| %4$-6d| %5$-6s", var, type, scope, pos,
+        assigned ? "yes" : "no");
   }
 }
\ No newline at end of file
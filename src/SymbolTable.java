@@ -1,34 +1,148 @@
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An implementation of a symbol table for the SAD Compiler for Alan Labouseur's compilers class.
  *
+ * Every scope gets its own map of the symbols declared in it and a link to the scope it is inside
+ * of, so finding a symbol only looks through the scopes that can actually see it, innermost first.
+ * Each scope also gets an ID of its own, so two blocks side by side are never mixed up even though
+ * they are nested just as deep.
+ *
  * @author Tim Polizzi
  */
 public class SymbolTable {
 
   private ArrayList<SymbolItem> staticTable;
+  private Scope current;
+  private int nextId;
+  private int nextIndex;
 
   /**
    * Creates a new SymbolTable item
    */
   public SymbolTable() {
     staticTable = new ArrayList<>();
+    current = null;
+    nextId = 0;
+    nextIndex = 0;
+  }
+
+  /**
+   * Creates a SymbolTable that starts out seeing what can be seen from the current scope of another
+   * one, for analyzing a Block apart from the rest of its program. The scopes are copied, so
+   * symbols declared in either table afterwards do not show up in the other, but the symbols that
+   * were already there are shared.
+   *
+   * @param outer The SymbolTable to start from.
+   * @param firstScopeId The ID the first scope entered is to get.
+   * @param firstIndex The index the first symbol declared is to get.
+   */
+  public SymbolTable(SymbolTable outer, int firstScopeId, int firstIndex) {
+    staticTable = new ArrayList<>();
+    nextId = firstScopeId;
+    nextIndex = firstIndex;
+
+    List<Scope> chain = new ArrayList<>();
+    for (Scope scope = outer.current; scope != null; scope = scope.parent) {
+      chain.add(scope);
+    }
+
+    current = null;
+    for (int i = chain.size() - 1; i >= 0; i--) {
+      current = new Scope(chain.get(i).id, current);
+      current.symbols.putAll(chain.get(i).symbols);
+    }
+  }
+
+  /**
+   * A single scope, with the symbols declared in it.
+   */
+  private static class Scope {
+
+    private final int id;
+    private final int depth;
+    private final Scope parent;
+    private final Map<String, SymbolItem> symbols;
+
+    private Scope(int id, Scope parent) {
+      this.id = id;
+      this.depth = parent == null ? 0 : parent.depth + 1;
+      this.parent = parent;
+      symbols = new LinkedHashMap<>();
+    }
   }
 
   /**
-   * Adds a new SymbolItem to the Symbol table.
+   * Starts a new scope inside of the current one.
+   *
+   * @return The ID of the new scope.
+   */
+  public int enterScope() {
+    current = new Scope(nextId++, current);
+    return current.id;
+  }
+
+  /**
+   * Sets aside scope IDs for scopes that will be entered in another SymbolTable, so that the scopes
+   * of both tables are numbered just as if they were one.
+   *
+   * @param count The number of IDs to set aside.
+   * @return The first of the IDs.
+   */
+  public int reserveScopes(int count) {
+    int first = nextId;
+    nextId += count;
+    return first;
+  }
+
+  /**
+   * Sets aside symbol indices for symbols that will be declared in another SymbolTable.
+   *
+   * @param count The number of indices to set aside.
+   * @return The first of the indices.
+   */
+  public int reserveIndices(int count) {
+    int first = nextIndex;
+    nextIndex += count;
+    return first;
+  }
+
+  /**
+   * Finishes the current scope, going back to the one it is inside of.
+   */
+  public void exitScope() {
+    current = current.parent;
+  }
+
+  /**
+   * Gets the ID of the current scope.
+   *
+   * @return The ID, or -1 if no scope has been entered.
+   */
+  public int getScopeId() {
+    return current == null ? -1 : current.id;
+  }
+
+  /**
+   * Adds a new SymbolItem to the Symbol table, in the current scope.
    *
    * @param var The String name of the variable to be added as a Symbol.
    * @param type The String name of the type of variable to be added as a Symbol.
-   * @param val The String representation of the value of the Symbol.
    * @param scope The integer scope of the variable to be added as a Symbol.
    * @param pos The integer line number of the initialization of the variable to be added as a
    * Symbol.
    */
-  public void newSymbol(String var, String type, String val, int scope, int pos) {
-    staticTable.add(new SymbolItem(var, type, val, scope, pos));
+  public void newSymbol(String var, String type, int scope, int pos) {
+    if (current == null) {
+      enterScope();
+    }
+
+    SymbolItem item = new SymbolItem(var, type, scope, pos, current.id, nextIndex++);
+    staticTable.add(item);
+    current.symbols.put(var, item);
   }
 
   /**
@@ -38,28 +152,29 @@ public class SymbolTable {
    */
   public String toString() {
     String bar = "-----------------------------------------";
-    String header = String
-        .format("%1$-6s| %2$-8s| %3$-8s| %4$-6s| %5$-6s", "Name", "Type", "Scope", "Line", "Value");
-    String toReturn = bar + "\n" + header + "\n" + bar;
+    String header = String.format("%1$-6s| %2$-8s| %3$-8s| %4$-6s| %5$-6s", "Name", "Type",
+        "Scope", "Line", "Assigned");
+    StringBuilder toReturn = new StringBuilder(bar + "\n" + header + "\n" + bar);
 
     for (SymbolItem item : staticTable) {
-      toReturn += "\n" + item.toString();
+      toReturn.append("\n").append(item.toString());
     }
 
-    return toReturn;
+    return toReturn.toString();
   }
 
   /**
-   * Searches the SymbolTable for any instances of a given symbol.
+   * Searches the scopes that can be seen from the current one for any instances of a given symbol.
    *
    * @param symbol The symbol that is being searched for.
-   * @return The list of symbols that have been found.
+   * @return The list of symbols that have been found, innermost first.
    */
   public List<SymbolItem> checkForSymbol(String symbol) {
     List<SymbolItem> foundList = new ArrayList<>();
 
-    for (SymbolItem item : staticTable) {
-      if (item.getVar().equals(symbol)) {
+    for (Scope scope = current; scope != null; scope = scope.parent) {
+      SymbolItem item = scope.symbols.get(symbol);
+      if (item != null) {
         foundList.add(item);
       }
     }
@@ -67,30 +182,69 @@ public class SymbolTable {
     return foundList;
   }
 
+  /**
+   * Finds the symbol a name means in the current scope, which is the one declared in the innermost
+   * scope that can see it.
+   *
+   * @param toFind The name of the symbol.
+   * @return The symbol, or null if it has not been declared anywhere that can be seen.
+   */
+  public SymbolItem lookup(String toFind) {
+    for (Scope scope = current; scope != null; scope = scope.parent) {
+      SymbolItem item = scope.symbols.get(toFind);
+      if (item != null) {
+        return item;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Finds a symbol that has been declared in the current scope itself.
+   *
+   * @param toFind The name of the symbol.
+   * @return The symbol, or null if it has not been declared in the current scope.
+   */
+  public SymbolItem lookupLocal(String toFind) {
+    if (current == null) {
+      return null;
+    }
+    return current.symbols.get(toFind);
+  }
+
   /**
    * @return The current "this" symbol, or null if the symbol does not exist.
    */
   public SymbolItem activeSymbol(String toFind, int currentScope) {
-    List<SymbolItem> symbols = checkForSymbol(toFind);
-    SymbolItem toReturn = null;
+    SymbolItem found = lookup(toFind);
 
-    if (symbols.size() < 1) {
+    if (found == null || found.getScope() > currentScope) {
       return null;
     }
+    return found;
+  }
 
-    for (SymbolItem item : symbols) {
-      if (item.getScope() <= currentScope) {
-        if (item.getScope() == currentScope) {
-          return item;
-        } else if (toReturn == null) {
-          toReturn = item;
-        }else if (toReturn.getScope() > item.getScope()) {
-          toReturn = item;
-        }
-      }
+  /**
+   * Gets the symbols declared in the current scope.
+   *
+   * @return The symbols, in the order they were declared.
+   */
+  public List<SymbolItem> getScopeSymbols() {
+    if (current == null) {
+      return new ArrayList<>();
     }
+    return new ArrayList<>(current.symbols.values());
+  }
 
-    return toReturn;
+  /**
+   * Adds symbols that were declared in another SymbolTable, where they were declared in this one.
+   *
+   * @param position Where in the order of declaration the symbols go.
+   * @param items The symbols, in the order they were declared.
+   */
+  public void insertAll(int position, List<SymbolItem> items) {
+    staticTable.addAll(position, items);
   }
 
   public ArrayList<SymbolItem> getList() {
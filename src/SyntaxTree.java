@@ -1,13 +1,17 @@
-import java.util.List;
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * A tree that can only add direct children. To utilize this properly, it will have a tree created
  * for each production and add them back up together to make a fully functional tree.
+ *
+ * The Nodes themselves are kept in a TreeArena, and a SyntaxTree is a view of the Node it is rooted
+ * at. Trees started with addTree share the arena of the tree they were started in.
  */
 public class SyntaxTree {
 
-  private Node root;
-  private int size;
+  private TreeArena arena;
+  private int root;
 
   /**
    * Generates a new SyntaxTree with a given String as its root.
@@ -15,7 +19,26 @@ public class SyntaxTree {
    * @param str the String to be the root of the SyntaxTree.
    */
   public SyntaxTree(String str) {
-    root = new Node(str);
+    arena = new TreeArena();
+    root = arena.addLabel(TreeArena.NONE, str);
+  }
+
+  /**
+   * Generates a new SyntaxTree with a kind of AST Node as its root.
+   *
+   * @param kind the kind of the root, which it is labeled by.
+   */
+  public SyntaxTree(AstKind kind) {
+    arena = new TreeArena();
+    root = arena.addLabel(TreeArena.NONE, kind, kind.getLabel());
+  }
+
+  /**
+   * Generates a view of the tree rooted at a Node that is already in an arena.
+   */
+  private SyntaxTree(TreeArena arena, int root) {
+    this.arena = arena;
+    this.root = root;
   }
 
   /**
@@ -24,15 +47,34 @@ public class SyntaxTree {
    * @return the Node root of the SyntaxTree.
    */
   public Node getRoot() {
-    return root;
+    return new Node(arena, root);
   }
 
   /**
-   * Gets the current size of the SyntaxTree.
+   * Gets the current size of the SyntaxTree, which is the number of Nodes under the root.
    *
    * @return the int value of the size of the SyntaxTree.
    */
   public int getSize() {
+    int size = 0;
+    int[] stack = new int[16];
+    int top = 0;
+
+    stack[top++] = arena.getFirstChild(root);
+    while (top > 0) {
+      int n = stack[--top];
+      if (n == TreeArena.NONE) {
+        continue;
+      }
+
+      size++;
+      if (top + 2 > stack.length) {
+        stack = Arrays.copyOf(stack, stack.length * 2);
+      }
+      stack[top++] = arena.getNextSibling(n);
+      stack[top++] = arena.getFirstChild(n);
+    }
+
     return size;
   }
 
@@ -42,22 +84,125 @@ public class SyntaxTree {
    * @param root the String the new Node is to contain.
    */
   public void add(String root) {
-    this.root.addChild(new Node(this.root, root));
-    size++;
+    arena.addLabel(this.root, root);
+  }
+
+  /**
+   * Adds a new Node of a kind of AST Node, containing the specified String, to the SyntaxTree.
+   *
+   * @param kind the kind of the new Node.
+   * @param root the String the new Node is to contain.
+   * @return The new Node.
+   */
+  public Node add(AstKind kind, String root) {
+    return new Node(arena, arena.addLabel(this.root, kind, root));
+  }
+
+  /**
+   * Adds a new Node for a Token to the SyntaxTree. Only where the Token is gets kept, not its text.
+   *
+   * @param token the Token the new Node is to contain.
+   * @return The new Node.
+   */
+  public Node add(Token token) {
+    return new Node(arena, arena.addToken(root, token));
+  }
+
+  /**
+   * Keeps the type that was worked out for a Node of the SyntaxTree on it.
+   *
+   * @param n The Node, which is either the root or one under it.
+   * @param type The type of the Node.
+   */
+  public void setType(Node n, Type type) {
+    arena.setType(n.getIndex(), type);
+  }
+
+  /**
+   * Keeps how many boolean expressions a Node of the SyntaxTree is inside of on it.
+   *
+   * @param n The Node, which is either the root or one under it.
+   * @param nesting The number of boolean expressions.
+   */
+  public void setNesting(Node n, int nesting) {
+    arena.setNesting(n.getIndex(), nesting);
+  }
+
+  /**
+   * Gives a Block of the SyntaxTree the ID of the scope it starts, before anything is added under
+   * it.
+   *
+   * @param n The Block.
+   * @param scope The ID of the scope.
+   */
+  public void setStartedScope(Node n, int scope) {
+    arena.setStartedScope(n.getIndex(), scope);
+  }
+
+  /**
+   * Replaces a run of Nodes that are next to each other with a single leaf, which is what constant
+   * folding leaves of an expression that could be worked out while compiling.
+   *
+   * @param first The first Node of the run.
+   * @param last The last Node of the run.
+   * @param kind The kind of the new leaf.
+   * @param val The value of the new leaf.
+   * @param type The type of the new leaf.
+   * @return The new leaf, which is where first was.
+   */
+  public Node replace(Node first, Node last, AstKind kind, String val, Type type) {
+    arena.replace(first.getIndex(), last.getIndex(), kind, val);
+    arena.setType(first.getIndex(), type);
+    return new Node(arena, first.getIndex());
+  }
+
+  /**
+   * Starts a new tree as a child of the current tree, in the same arena.
+   *
+   * @param str the String to be the root of the new tree.
+   * @return The new tree, which anything can still be added to.
+   */
+  public SyntaxTree addTree(String str) {
+    return new SyntaxTree(arena, arena.addLabel(root, str));
+  }
+
+  /**
+   * Starts a new tree, with a kind of AST Node as its root, as a child of the current tree.
+   *
+   * @param kind the kind of the root of the new tree, which it is labeled by.
+   * @return The new tree, which anything can still be added to.
+   */
+  public SyntaxTree addTree(AstKind kind) {
+    return new SyntaxTree(arena, arena.addLabel(root, kind, kind.getLabel()));
   }
 
   /**
-   * Adds a preexisting tree to the current tree's children.
+   * Adds a preexisting tree to the current tree's children. The tree is copied in, so anything
+   * added to it afterwards does not show up here; addTree builds a child tree in place instead.
    *
    * @param tree The SyntaxTree to be added to tree.
    */
   public void add(SyntaxTree tree) {
-    Node newChild = tree.getRoot();
+    arena.copy(root, tree.arena, tree.root);
+  }
 
-    root.addChild(newChild);
-    newChild.setParent(root);
+  /**
+   * Adds everything under the root of a preexisting tree to the current tree's children, in order.
+   * Like add, the Nodes are copied in.
+   *
+   * @param tree The SyntaxTree whose root's children are to be added to tree.
+   * @return Where each Node was copied to, by its index in the arena of the added tree, or NONE
+   * for the Nodes that were not copied.
+   */
+  public int[] addAll(SyntaxTree tree) {
+    int[] map = new int[tree.arena.size()];
+    Arrays.fill(map, TreeArena.NONE);
 
-    size += tree.getSize();
+    for (int child = tree.arena.getFirstChild(tree.root); child != TreeArena.NONE;
+        child = tree.arena.getNextSibling(child)) {
+      arena.copy(root, tree.arena, child, map);
+    }
+    return map;
   }
 
   /**
@@ -66,14 +211,50 @@ public class SyntaxTree {
    * @return The integer value of the distance between the node and the root.
    */
   public int getDepth(Node n) {
-    int count = 0;
+    return n.getDepth();
+  }
+
+  /**
+   * Walks the SyntaxTree from the root down, with a stack of the next Node to visit on each level
+   * rather than by recursing.
+   *
+   * @param visitor What is done with each Node.
+   */
+  public void walk(AstVisitor visitor) {
+    int[] next = new int[16];
+    int[] parents = new int[16];
+    int top = 0;
 
-    while (n.getParent() != null) {
-      n = n.getParent();
-      count++;
+    if (visitor.visit(getRoot()) == AstVisitor.Walk.CHILDREN) {
+      next[top] = arena.getFirstChild(root);
+      parents[top] = root;
+      top++;
     }
 
-    return count;
+    while (top > 0) {
+      int child = next[top - 1];
+
+      if (child == TreeArena.NONE) {
+        top--;
+        visitor.leave(new Node(arena, parents[top]));
+        continue;
+      }
+
+      next[top - 1] = arena.getNextSibling(child);
+      AstVisitor.Walk walk = visitor.visit(new Node(arena, child));
+
+      if (walk == AstVisitor.Walk.CHILDREN) {
+        if (top == next.length) {
+          next = Arrays.copyOf(next, top * 2);
+          parents = Arrays.copyOf(parents, top * 2);
+        }
+        next[top] = arena.getFirstChild(child);
+        parents[top] = child;
+        top++;
+      } else if (walk == AstVisitor.Walk.SKIP_SIBLINGS) {
+        next[top - 1] = TreeArena.NONE;
+      }
+    }
   }
 
   /**
@@ -82,41 +263,55 @@ public class SyntaxTree {
    * @return a String containing the SyntaxTree.
    */
   public String depthFirstTraversal() {
-    List childList = root.getChildren();
-    int depth = 0;
-    String toReturn = root.getVal().toString() + "\n";
+    StringBuilder toReturn = new StringBuilder();
 
-    toReturn += dft(childList, depth);
+    try {
+      depthFirstTraversal(toReturn);
+    } catch (IOException e) {
+      // A StringBuilder never throws
+    }
 
-    return toReturn;
+    return toReturn.toString();
   }
 
-  private String dft(List children, int depth) {
-    String toReturn = "";
-    depth++;
+  /**
+   * Writes the whole SyntaxTree out, a line per Node with a dash for each level it is down. The
+   * tree is walked with a stack of the next Node to write on each level rather than by recursing,
+   * and the dashes are kept in one buffer that grows and shrinks with the depth.
+   *
+   * @param out Where the SyntaxTree is written to.
+   * @throws IOException If out can not be written to.
+   */
+  public void depthFirstTraversal(Appendable out) throws IOException {
+    int[] levels = new int[16];
+    int top = 0;
+    StringBuilder dashes = new StringBuilder("-");
 
-    for (Object child : children) {
+    arena.appendVal(root, out);
+    out.append('\n');
+    levels[top++] = arena.getFirstChild(root);
 
-      if (((Node) child).getChildren().size() > 0) {
-        toReturn += addDashes(depth) + ((Node) child).getVal() + "\n";
-        toReturn += dft(((Node) child).getChildren(), depth);
+    while (top > 0) {
+      int child = levels[top - 1];
 
-      } else {
-        toReturn += addDashes(depth) + ((Node) child).getVal() + "\n";
+      if (child == TreeArena.NONE) {
+        top--;
+        dashes.setLength(top);
+        continue;
       }
-    }
-    return toReturn;
-  }
 
-  private String addDashes(int depth) {
-    String toReturn = "";
+      levels[top - 1] = arena.getNextSibling(child);
+      out.append(dashes);
+      arena.appendVal(child, out);
+      out.append('\n');
 
-    int j = 0;
-    while (j < depth) {
-      toReturn += "-";
-      j++;
+      if (arena.getFirstChild(child) != TreeArena.NONE) {
+        if (top == levels.length) {
+          levels = Arrays.copyOf(levels, top * 2);
+        }
+        levels[top++] = arena.getFirstChild(child);
+        dashes.append('-');
+      }
     }
-
-    return toReturn;
   }
 }
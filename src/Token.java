@@ -1,56 +1,21 @@
-import java.util.regex.Pattern;
-
+/**
+ * A view onto a single Token in a TokenBuffer. It only holds where the Token is, everything else is
+ * read out of the buffer when it is asked for.
+ */
 public class Token {
 
-  private String flavor;
-  private String original;
-  private int line;
-  private int pos;
-  private boolean string;
+  private TokenBuffer buffer;
+  private int index;
 
   /**
-   * Generates a Token object that contains a String, it's line and position on the line, and the
-   * "flavor" of the String which describes it's type.
+   * Generates a Token that views the Token at index in buffer, which has a String, it's line and
+   * position on the line, and the kind of the String which describes it's type. The kind is worked
+   * out once by the Lexer, so nothing after it ever has to look at the String to know what the
+   * Token is.
    */
-  public Token(String original, int line, int pos, boolean string) {
-    this.original = original;
-    this.line = line;
-    this.pos = pos;
-    this.string = string;
-    flavor = "error";
-
-    setFlavor();
-  }
-
-  /**
-   * Sets the "Flavor" of the Token, so that it may be used in other parts of the compiler.
-   */
-  private void setFlavor() {
-    //So the double and less/greater than or equal to are unused but I'm leaving them in. Just in case.
-
-    String regexInt = "0|[1-9][0-9]*";
-    String regexChar = "[a-z]";
-
-    String[] regexArr = {"\\$", "\\{", "}", "print", "\\(", "\\)", "=", "while", "if", "int",
-        "string", "boolean", regexInt, regexChar, "\"", "true", "false", " ", "==",
-        "!=", "\\+"};
-    String[] flavors = {"EOP", "L_BRACE", "R_BRACE", "PRINT_STMT", "L_PAREN", "R_PAREN",
-        "ASSIGN_OP", "WHILE_LOOP", "IF_STMT", "I_TYPE", "S_TYPE", "B_TYPE", "INT",
-        "CHAR", "STRING", "T_BOOL", "F_BOOL", "SPACE", "EQUAL", "NOT_EQUAL", "INT_OP"};
-
-    if (string) {
-      if (Pattern.matches(regexChar + "| ", original)) {
-        flavor = "CHAR";
-      } else {
-        flavor = "error";
-      }
-    } else {
-      for (int i = 0; i < regexArr.length; i++) {
-        if (Pattern.matches(regexArr[i], original)) {
-          flavor = flavors[i];
-        }
-      }
-    }
+  public Token(TokenBuffer buffer, int index) {
+    this.buffer = buffer;
+    this.index = index;
   }
 
   /**
@@ -58,13 +23,7 @@ public class Token {
    * a illegal character has been entered into the lexer.
    */
   public boolean errorCheck() {
-    boolean error = false;
-
-    if (flavor.equals("error")) {
-      error = true;
-    }
-
-    return error;
+    return getKind() == TokenKind.ERROR;
   }
 
   /**
@@ -78,9 +37,11 @@ public class Token {
 
     if (!errorCheck()) {
       toString =
-          "DEBUG Lexer - " + flavor + " [ " + original + " ] found at (" + line + ":" + pos + ")";
+          "DEBUG Lexer - " + getKind() + " [ " + getOriginal() + " ] found at (" + getLine() + ":"
+              + getPos() + ")";
     } else {
-      toString = "ERROR Lexer - Error:" + line + ":" + pos + " Unrecognized Token: " + original;
+      toString = "ERROR Lexer - Error:" + getLine() + ":" + getPos() + " Unrecognized Token: "
+          + getOriginal();
     }
     return toString;
   }
@@ -91,16 +52,25 @@ public class Token {
    * @return The original string.
    */
   public String getOriginal() {
-    return original;
+    return buffer.getText(index);
   }
 
   /**
-   * Gets the Flavor of the Token
+   * Gets the Flavor of the Token, the name of its kind.
    *
    * @return the Flavor of the Token
    */
   public String getFlavor() {
-    return flavor;
+    return getKind().name();
+  }
+
+  /**
+   * Gets the kind of the Token
+   *
+   * @return the kind of the Token
+   */
+  public TokenKind getKind() {
+    return buffer.getKind(index);
   }
 
   /**
@@ -109,10 +79,28 @@ public class Token {
    * @return the Line number of the Token
    */
   public int getLine() {
-    return line;
+    return buffer.getLine(index);
   }
 
   public int getPos() {
-    return pos;
+    return buffer.getColumn(index);
+  }
+
+  /**
+   * Gets the TokenBuffer the Token is a view onto.
+   *
+   * @return the TokenBuffer of the Token
+   */
+  public TokenBuffer getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Gets the index of the Token in its TokenBuffer.
+   *
+   * @return the index of the Token
+   */
+  public int getIndex() {
+    return index;
   }
 }
@@ -0,0 +1,205 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A compact store for the Tokens of a program for the SAD Compiler for Alan Labouseur's compilers
+ * class. Rather than an object per Token, the kind, start, length and column of every Token are
+ * kept in parallel int arrays, and the text of a Token is read back out of the source text. The
+ * line a Token is on is only worked out when it is asked for, from an index of where each line
+ * starts.
+ *
+ * @author Tim Polizzi
+ */
+public class TokenBuffer {
+
+  private static final TokenKind[] KINDS = TokenKind.values();
+  private static final int INITIAL_CAPACITY = 64;
+
+  private CharSequence source;
+  private int[] kinds;
+  private int[] starts;
+  private int[] lengths;
+  private int[] columns;
+  private int size;
+
+  private int[] lineStarts;
+  private int lineCount;
+  private int indexedLength;
+
+  /**
+   * Creates a new, empty TokenBuffer over a given source text. The source may still be growing
+   * while Tokens are added, as it does while the Lexer streams a program in.
+   *
+   * @param source The text that the starts and lengths of the Tokens point into.
+   */
+  public TokenBuffer(CharSequence source) {
+    this.source = source;
+    kinds = new int[INITIAL_CAPACITY];
+    starts = new int[INITIAL_CAPACITY];
+    lengths = new int[INITIAL_CAPACITY];
+    columns = new int[INITIAL_CAPACITY];
+    size = 0;
+  }
+
+  /**
+   * Adds a Token to the end of the buffer.
+   *
+   * @param kind The kind of the Token.
+   * @param start The offset in the source text of the first character of the Token.
+   * @param length The number of characters in the Token.
+   * @param column The position on the line that is reported for the Token.
+   * @return The index of the new Token.
+   */
+  public int add(TokenKind kind, int start, int length, int column) {
+    if (size == kinds.length) {
+      int capacity = size * 2;
+      kinds = Arrays.copyOf(kinds, capacity);
+      starts = Arrays.copyOf(starts, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+      columns = Arrays.copyOf(columns, capacity);
+    }
+
+    kinds[size] = kind.ordinal();
+    starts[size] = start;
+    lengths[size] = length;
+    columns[size] = column;
+
+    return size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public TokenKind getKind(int index) {
+    return KINDS[kinds[index]];
+  }
+
+  public int getStart(int index) {
+    return starts[index];
+  }
+
+  public int getLength(int index) {
+    return lengths[index];
+  }
+
+  /**
+   * Gets the line a Token is on.
+   *
+   * @param index The index of the Token.
+   * @return The line number, starting at 1.
+   */
+  public int getLine(int index) {
+    return lineOf(starts[index]);
+  }
+
+  public int getColumn(int index) {
+    return columns[index];
+  }
+
+  /**
+   * Gets the text of a Token out of the source text.
+   *
+   * @param index The index of the Token.
+   * @return The String the Token was made out of.
+   */
+  public String getText(int index) {
+    return source.subSequence(starts[index], starts[index] + lengths[index]).toString();
+  }
+
+  public CharSequence getSource() {
+    return source;
+  }
+
+  /**
+   * Finds the line an offset in the source text is on. The index of where each line starts is only
+   * built the first time it is needed, since it is only needed for diagnostics.
+   *
+   * @param offset The offset in the source text.
+   * @return The line number, starting at 1, the offset is on.
+   */
+  public synchronized int lineOf(int offset) {
+    int[] index = lineIndex();
+    int found = Arrays.binarySearch(index, 0, lineCount, offset);
+
+    if (found < 0) {
+      found = -found - 2;
+    }
+    return found + 1;
+  }
+
+  /**
+   * Gets the text of a whole line of the source, for showing where a problem is.
+   *
+   * @param line The line number, starting at 1.
+   * @return The text of the line without its line break, or an empty String if there is no such
+   * line.
+   */
+  public synchronized String lineText(int line) {
+    int[] index = lineIndex();
+
+    if (line < 1 || line > lineCount) {
+      return "";
+    }
+
+    int start = index[line - 1];
+    int end = line < lineCount ? index[line] - 1 : source.length();
+    return source.subSequence(start, end).toString();
+  }
+
+  /**
+   * Gets a List view of the buffer. The Tokens it hands out are views onto the buffer too, so
+   * nothing is copied out of the arrays until it is asked for.
+   *
+   * @return A read only List of the Tokens in the buffer.
+   */
+  public List<Token> asList() {
+    return new TokenList();
+  }
+
+  /**
+   * Builds, or catches up, the index of where each line starts. Blocks analyzed on their own ask
+   * for lines from other threads, which is why everything that uses it is synchronized.
+   */
+  private int[] lineIndex() {
+    if (lineStarts == null) {
+      lineStarts = new int[INITIAL_CAPACITY];
+      lineCount = 1;
+      indexedLength = 0;
+    }
+
+    for (int i = indexedLength; i < source.length(); i++) {
+      if (source.charAt(i) == '\n') {
+        if (lineCount == lineStarts.length) {
+          lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount] = i + 1;
+        lineCount++;
+      }
+    }
+    indexedLength = source.length();
+
+    return lineStarts;
+  }
+
+  /**
+   * The List view of the buffer.
+   */
+  private class TokenList extends AbstractList<Token> implements RandomAccess {
+
+    @Override
+    public Token get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+      }
+      return new Token(TokenBuffer.this, index);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * A read only cursor over the Tokens in a TokenBuffer, for the SAD Compiler for Alan Labouseur's
+ * compilers class. Moving through the Tokens only moves an index, so nothing is ever shifted or
+ * copied out of the buffer.
+ *
+ * @author Tim Polizzi
+ */
+public class TokenCursor {
+
+  private TokenBuffer tokens;
+  private int position;
+
+  /**
+   * Creates a new TokenCursor at the first Token of a TokenBuffer.
+   *
+   * @param tokens The Tokens the cursor moves over.
+   */
+  public TokenCursor(TokenBuffer tokens) {
+    this.tokens = tokens;
+    position = 0;
+  }
+
+  /**
+   * Checks if every Token has been moved past.
+   *
+   * @return True if there are no Tokens left, false otherwise.
+   */
+  public boolean atEnd() {
+    return position >= tokens.size();
+  }
+
+  /**
+   * Sneak a look at the current Token.
+   *
+   * @return The current Token, or null if there are no Tokens left.
+   */
+  public Token peek() {
+    if (atEnd()) {
+      return null;
+    }
+    return new Token(tokens, position);
+  }
+
+  /**
+   * Gets the kind of the current Token.
+   *
+   * @return The kind of the current Token, or null if there are no Tokens left.
+   */
+  public TokenKind peekKind() {
+    return peekKind(0);
+  }
+
+  /**
+   * Gets the kind of a Token further along than the current one.
+   *
+   * @param ahead How many Tokens past the current Token to look.
+   * @return The kind of that Token, or null if the Tokens run out first.
+   */
+  public TokenKind peekKind(int ahead) {
+    if (position + ahead >= tokens.size()) {
+      return null;
+    }
+    return tokens.getKind(position + ahead);
+  }
+
+  /**
+   * Moves past the current Token.
+   *
+   * @return The Token that was moved past.
+   */
+  public Token advance() {
+    Token current = peek();
+    position++;
+    return current;
+  }
+
+  /**
+   * Moves past the current Token without making a Token for it, for when nothing needs it.
+   */
+  public void skip() {
+    position++;
+  }
+
+  /**
+   * Marks the current position so it can be gone back to with reset.
+   *
+   * @return The mark for the current position.
+   */
+  public int mark() {
+    return position;
+  }
+
+  /**
+   * Goes back to a position that was marked.
+   *
+   * @param mark A mark returned by mark.
+   */
+  public void reset(int mark) {
+    position = mark;
+  }
+
+  /**
+   * Gets the TokenBuffer the cursor moves over.
+   *
+   * @return The TokenBuffer.
+   */
+  public TokenBuffer getTokens() {
+    return tokens;
+  }
+}
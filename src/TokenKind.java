@@ -0,0 +1,141 @@
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The kinds of Token in the grammar of the SAD Compiler for Alan Labouseur's compilers class. These
+ * are what used to be the "flavor" Strings, so the names are kept the same for the output.
+ *
+ * @author Tim Polizzi
+ */
+public enum TokenKind implements GrammarSymbol {
+  EOP,
+  L_BRACE,
+  R_BRACE,
+  PRINT_STMT,
+  L_PAREN,
+  R_PAREN,
+  ASSIGN_OP,
+  WHILE_LOOP,
+  IF_STMT,
+  I_TYPE,
+  S_TYPE,
+  B_TYPE,
+  INT,
+  CHAR,
+  STRING,
+  T_BOOL,
+  F_BOOL,
+  SPACE,
+  EQUAL,
+  NOT_EQUAL,
+  INT_OP,
+  ERROR;
+
+  /**
+   * Everything a statement can start with: {, if, print, a char, int, string, boolean and while.
+   */
+  public static final Set<TokenKind> STATEMENT_START = Collections.unmodifiableSet(
+      EnumSet.of(L_BRACE, PRINT_STMT, IF_STMT, CHAR, I_TYPE, S_TYPE, B_TYPE, WHILE_LOOP));
+
+  /**
+   * The type keywords int, string and boolean.
+   */
+  public static final Set<TokenKind> TYPES = Collections
+      .unmodifiableSet(EnumSet.of(I_TYPE, S_TYPE, B_TYPE));
+
+  /**
+   * Everything a boolean expression can start with: (, true and false.
+   */
+  public static final Set<TokenKind> BOOL_EXPR_START = Collections
+      .unmodifiableSet(EnumSet.of(L_PAREN, T_BOOL, F_BOOL));
+
+  /**
+   * Classifies the text of a Token that is not inside of a string.
+   *
+   * @param original The text to be classified.
+   * @return The kind of the text, or ERROR if it is not a legal Token.
+   */
+  public static TokenKind classify(String original) {
+    switch (original) {
+      case "$":
+        return EOP;
+      case "{":
+        return L_BRACE;
+      case "}":
+        return R_BRACE;
+      case "print":
+        return PRINT_STMT;
+      case "(":
+        return L_PAREN;
+      case ")":
+        return R_PAREN;
+      case "=":
+        return ASSIGN_OP;
+      case "while":
+        return WHILE_LOOP;
+      case "if":
+        return IF_STMT;
+      case "int":
+        return I_TYPE;
+      case "string":
+        return S_TYPE;
+      case "boolean":
+        return B_TYPE;
+      case "\"":
+        return STRING;
+      case "true":
+        return T_BOOL;
+      case "false":
+        return F_BOOL;
+      case " ":
+        return SPACE;
+      case "==":
+        return EQUAL;
+      case "!=":
+        return NOT_EQUAL;
+      case "+":
+        return INT_OP;
+      default:
+        if (isNumber(original)) {
+          return INT;
+        } else if (original.length() == 1 && isLetter(original.charAt(0))) {
+          return CHAR;
+        }
+        return ERROR;
+    }
+  }
+
+  /**
+   * Classifies a character that is inside of a string, where only letters and spaces are legal.
+   *
+   * @param c The character to be classified.
+   * @return CHAR if the character is legal, ERROR otherwise.
+   */
+  public static TokenKind classifyInString(char c) {
+    if (isLetter(c) || c == ' ') {
+      return CHAR;
+    }
+    return ERROR;
+  }
+
+  /**
+   * Checks if a String is an integer, which is any number without leading zeros.
+   */
+  private static boolean isNumber(String toCheck) {
+    if (toCheck.isEmpty() || (toCheck.charAt(0) == '0' && toCheck.length() > 1)) {
+      return false;
+    }
+
+    for (int i = 0; i < toCheck.length(); i++) {
+      if (toCheck.charAt(i) < '0' || toCheck.charAt(i) > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isLetter(char c) {
+    return c >= 'a' && c <= 'z';
+  }
+}
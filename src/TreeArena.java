@@ -0,0 +1,448 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The storage behind SyntaxTrees and Nodes for the SAD Compiler for Alan Labouseur's compilers
+ * class. Rather than an object per Node with a list of its children, every Node in a tree is a
+ * slot in a set of parallel int arrays, and the children of a Node are linked through its first
+ * child and the next sibling of each child.
+ *
+ * A Node is either a label, such as "Block" or a string literal, which is kept once in a table of
+ * labels, or a Token, which is kept as its index in the TokenBuffer it came from.
+ *
+ * @author Tim Polizzi
+ */
+public class TreeArena {
+
+  /**
+   * Where there is no Node, such as the parent of a root or the first child of a leaf.
+   */
+  public static final int NONE = -1;
+
+  private static final int INITIAL_CAPACITY = 64;
+  private static final AstKind[] KINDS = AstKind.values();
+  private static final Type[] TYPES = Type.values();
+
+  private int[] kinds;
+  private int[] labels;
+  private int[] tokens;
+  private int[] parents;
+  private int[] firstChildren;
+  private int[] lastChildren;
+  private int[] nextSiblings;
+  private int[] childCounts;
+  private int[] depths;
+  private int[] scopes;
+  private int[] startedScopes;
+  private int[] types;
+  private int[] nestings;
+  private int size;
+
+  private List<String> labelList;
+  private Map<String, Integer> labelIds;
+  private int scopeLabel;
+  private int nextScope;
+  private TokenBuffer buffer;
+
+  /**
+   * Creates a new, empty TreeArena.
+   */
+  public TreeArena() {
+    kinds = new int[INITIAL_CAPACITY];
+    labels = new int[INITIAL_CAPACITY];
+    tokens = new int[INITIAL_CAPACITY];
+    parents = new int[INITIAL_CAPACITY];
+    firstChildren = new int[INITIAL_CAPACITY];
+    lastChildren = new int[INITIAL_CAPACITY];
+    nextSiblings = new int[INITIAL_CAPACITY];
+    childCounts = new int[INITIAL_CAPACITY];
+    depths = new int[INITIAL_CAPACITY];
+    scopes = new int[INITIAL_CAPACITY];
+    startedScopes = new int[INITIAL_CAPACITY];
+    types = new int[INITIAL_CAPACITY];
+    nestings = new int[INITIAL_CAPACITY];
+    size = 0;
+
+    labelList = new ArrayList<>();
+    labelIds = new HashMap<>();
+    scopeLabel = labelId(Node.SCOPE);
+    nextScope = 0;
+  }
+
+  /**
+   * Adds a Node that is a label, which is not any kind of AST Node.
+   *
+   * @param parent The Node to add it under, or NONE for a new root.
+   * @param label The label of the Node.
+   * @return The index of the new Node.
+   */
+  public int addLabel(int parent, String label) {
+    return addLabel(parent, AstKind.OTHER, label);
+  }
+
+  /**
+   * Adds a Node that is a label.
+   *
+   * @param parent The Node to add it under, or NONE for a new root.
+   * @param kind The kind of the Node.
+   * @param label The label of the Node.
+   * @return The index of the new Node.
+   */
+  public int addLabel(int parent, AstKind kind, String label) {
+    int node = newNode(parent);
+    kinds[node] = kind.ordinal();
+    labels[node] = labelId(label);
+    if (labels[node] == scopeLabel) {
+      startedScopes[node] = nextScope++;
+    }
+    return node;
+  }
+
+  /**
+   * Adds a Node that is a Token, of the kind of leaf that the Token is. The Tokens of a tree all
+   * come from the same program, so only the first TokenBuffer is kept, and a Token from any other
+   * one is kept as a label instead.
+   *
+   * @param parent The Node to add it under, or NONE for a new root.
+   * @param token The Token.
+   * @return The index of the new Node.
+   */
+  public int addToken(int parent, Token token) {
+    if (buffer == null) {
+      buffer = token.getBuffer();
+    }
+    if (buffer != token.getBuffer()) {
+      return addLabel(parent, AstKind.of(token.getKind()), token.getOriginal());
+    }
+
+    int node = newNode(parent);
+    kinds[node] = AstKind.of(token.getKind()).ordinal();
+    tokens[node] = token.getIndex();
+    return node;
+  }
+
+  /**
+   * Copies a Node, and everything under it, from another TreeArena.
+   *
+   * @param parent The Node to add the copy under, or NONE for a new root.
+   * @param from The TreeArena to copy from.
+   * @param node The Node in from to copy.
+   * @return The index of the copy.
+   */
+  public int copy(int parent, TreeArena from, int node) {
+    return copy(parent, from, node, null);
+  }
+
+  /**
+   * Copies a Node, and everything under it, from another TreeArena, keeping track of where each
+   * Node was copied to.
+   *
+   * @param parent The Node to add the copy under, or NONE for a new root.
+   * @param from The TreeArena to copy from.
+   * @param node The Node in from to copy.
+   * @param map Where the index of the copy of each Node is put, by the index of the Node in from.
+   * @return The index of the copy.
+   */
+  public int copy(int parent, TreeArena from, int node, int[] map) {
+    int copy = copyNode(parent, from, node);
+    if (map != null) {
+      map[node] = copy;
+    }
+
+    // Pairs of a Node still to be copied and the copy of its parent. Going through them in order
+    // copies the children of each Node in order.
+    int[] queue = new int[INITIAL_CAPACITY];
+    int head = 0;
+    int tail = 0;
+
+    for (int child = from.firstChildren[node]; child != NONE; child = from.nextSiblings[child]) {
+      queue = enqueue(queue, tail, child, copy);
+      tail += 2;
+    }
+
+    while (head < tail) {
+      int next = queue[head];
+      int nextCopy = copyNode(queue[head + 1], from, next);
+      if (map != null) {
+        map[next] = nextCopy;
+      }
+      head += 2;
+
+      for (int child = from.firstChildren[next]; child != NONE;
+          child = from.nextSiblings[child]) {
+        queue = enqueue(queue, tail, child, nextCopy);
+        tail += 2;
+      }
+    }
+
+    return copy;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public AstKind getKind(int node) {
+    return KINDS[kinds[node]];
+  }
+
+  public int getParent(int node) {
+    return parents[node];
+  }
+
+  public int getFirstChild(int node) {
+    return firstChildren[node];
+  }
+
+  public int getNextSibling(int node) {
+    return nextSiblings[node];
+  }
+
+  public int getChildCount(int node) {
+    return childCounts[node];
+  }
+
+  public int getDepth(int node) {
+    return depths[node];
+  }
+
+  /**
+   * Gets the ID of the scope a Node is in, which is the one the closest Block above it starts.
+   *
+   * @param node The index of the Node.
+   * @return The ID of the scope, or NONE if there is no Block above the Node.
+   */
+  public int getScope(int node) {
+    return scopes[node];
+  }
+
+  /**
+   * Gets the ID of the scope a Block starts. Every Block is given the next ID of the arena when it
+   * is added, unless it is given another one with setStartedScope.
+   *
+   * @param node The index of the Node.
+   * @return The ID of the scope, or NONE if the Node is not a Block.
+   */
+  public int getStartedScope(int node) {
+    return startedScopes[node];
+  }
+
+  /**
+   * Gives a Block the ID of the scope it starts, such as the one the SymbolTable gave the scope. It
+   * has to be given before anything is added under the Block.
+   *
+   * @param node The index of the Block.
+   * @param scope The ID of the scope.
+   */
+  public void setStartedScope(int node, int scope) {
+    startedScopes[node] = scope;
+  }
+
+  /**
+   * Gets the type that was worked out for a Node.
+   *
+   * @param node The index of the Node.
+   * @return The type of the Node, or null if it has none.
+   */
+  public Type getType(int node) {
+    if (types[node] == NONE) {
+      return null;
+    }
+    return TYPES[types[node]];
+  }
+
+  public void setType(int node, Type type) {
+    types[node] = type == null ? NONE : type.ordinal();
+  }
+
+  /**
+   * Gets how many boolean expressions a Node is inside of, which is what tells apart where the
+   * parentheses were in an expression that has been laid out flat in the AST.
+   *
+   * @param node The index of the Node.
+   * @return The number of boolean expressions, or 0 if it is not in one.
+   */
+  public int getNesting(int node) {
+    return nestings[node];
+  }
+
+  public void setNesting(int node, int nesting) {
+    nestings[node] = nesting;
+  }
+
+  /**
+   * Replaces a run of siblings with a single leaf that is a label, which takes the place of the
+   * first of them. The rest are left out of the tree, but keep their indices. The leaf is inside of
+   * as many boolean expressions as the run was, which is the fewest any Node of it is inside of.
+   *
+   * @param first The index of the first Node of the run.
+   * @param last The index of the last Node of the run, which is first or a sibling after it.
+   * @param kind The kind of the new leaf.
+   * @param label The label of the new leaf.
+   */
+  public void replace(int first, int last, AstKind kind, String label) {
+    int parent = parents[first];
+    int removed = 0;
+    int nesting = nestings[last];
+
+    for (int node = first; node != last; node = nextSiblings[node]) {
+      removed++;
+      nesting = Math.min(nesting, nestings[node]);
+    }
+
+    kinds[first] = kind.ordinal();
+    labels[first] = labelId(label);
+    tokens[first] = NONE;
+    firstChildren[first] = NONE;
+    lastChildren[first] = NONE;
+    childCounts[first] = 0;
+    types[first] = NONE;
+    startedScopes[first] = NONE;
+    nestings[first] = nesting;
+    nextSiblings[first] = nextSiblings[last];
+
+    if (parent != NONE) {
+      if (lastChildren[parent] == last) {
+        lastChildren[parent] = first;
+      }
+      childCounts[parent] -= removed;
+    }
+  }
+
+  /**
+   * Gets the index of the Token a Node is.
+   *
+   * @param node The index of the Node.
+   * @return The index of the Token in its TokenBuffer, or NONE if the Node is a label.
+   */
+  public int getToken(int node) {
+    return tokens[node];
+  }
+
+  /**
+   * Gets the value of a Node, which is either its label or the text of its Token.
+   *
+   * @param node The index of the Node.
+   * @return The value of the Node.
+   */
+  public String getVal(int node) {
+    if (tokens[node] != NONE) {
+      return buffer.getText(tokens[node]);
+    }
+    return labelList.get(labels[node]);
+  }
+
+  /**
+   * Appends the value of a Node somewhere, without making a String for a Token.
+   *
+   * @param node The index of the Node.
+   * @param out Where the value is appended to.
+   * @throws IOException If out can not be appended to.
+   */
+  public void appendVal(int node, Appendable out) throws IOException {
+    if (tokens[node] != NONE) {
+      int start = buffer.getStart(tokens[node]);
+      out.append(buffer.getSource(), start, start + buffer.getLength(tokens[node]));
+    } else {
+      out.append(labelList.get(labels[node]));
+    }
+  }
+
+  /**
+   * Copies a single Node from another TreeArena, as a Token if it is one from the same TokenBuffer.
+   */
+  private int copyNode(int parent, TreeArena from, int node) {
+    int copy;
+
+    if (from.tokens[node] != NONE && (buffer == null || buffer == from.buffer)) {
+      buffer = from.buffer;
+      copy = newNode(parent);
+      kinds[copy] = from.kinds[node];
+      tokens[copy] = from.tokens[node];
+    } else {
+      copy = addLabel(parent, from.getKind(node), from.getVal(node));
+    }
+    types[copy] = from.types[node];
+    nestings[copy] = from.nestings[node];
+    if (from.startedScopes[node] != NONE) {
+      startedScopes[copy] = from.startedScopes[node];
+    }
+    return copy;
+  }
+
+  /**
+   * Makes room for a new Node and links it in as the last child of its parent.
+   */
+  private int newNode(int parent) {
+    if (size == labels.length) {
+      int capacity = size * 2;
+      kinds = Arrays.copyOf(kinds, capacity);
+      labels = Arrays.copyOf(labels, capacity);
+      tokens = Arrays.copyOf(tokens, capacity);
+      parents = Arrays.copyOf(parents, capacity);
+      firstChildren = Arrays.copyOf(firstChildren, capacity);
+      lastChildren = Arrays.copyOf(lastChildren, capacity);
+      nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+      childCounts = Arrays.copyOf(childCounts, capacity);
+      depths = Arrays.copyOf(depths, capacity);
+      scopes = Arrays.copyOf(scopes, capacity);
+      startedScopes = Arrays.copyOf(startedScopes, capacity);
+      types = Arrays.copyOf(types, capacity);
+      nestings = Arrays.copyOf(nestings, capacity);
+    }
+
+    int node = size++;
+    labels[node] = NONE;
+    tokens[node] = NONE;
+    parents[node] = parent;
+    firstChildren[node] = NONE;
+    lastChildren[node] = NONE;
+    nextSiblings[node] = NONE;
+    childCounts[node] = 0;
+    types[node] = NONE;
+    nestings[node] = 0;
+    startedScopes[node] = NONE;
+
+    if (parent == NONE) {
+      depths[node] = 0;
+      scopes[node] = NONE;
+    } else {
+      if (lastChildren[parent] == NONE) {
+        firstChildren[parent] = node;
+      } else {
+        nextSiblings[lastChildren[parent]] = node;
+      }
+      lastChildren[parent] = node;
+      childCounts[parent]++;
+
+      depths[node] = depths[parent] + 1;
+      scopes[node] = labels[parent] == scopeLabel ? startedScopes[parent] : scopes[parent];
+    }
+
+    return node;
+  }
+
+  private int labelId(String label) {
+    Integer id = labelIds.get(label);
+
+    if (id == null) {
+      id = labelList.size();
+      labelList.add(label);
+      labelIds.put(label, id);
+    }
+    return id;
+  }
+
+  private static int[] enqueue(int[] queue, int tail, int node, int parent) {
+    if (tail + 2 > queue.length) {
+      queue = Arrays.copyOf(queue, queue.length * 2);
+    }
+    queue[tail] = node;
+    queue[tail + 1] = parent;
+    return queue;
+  }
+}
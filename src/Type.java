@@ -0,0 +1,46 @@
+/**
+ * The types of the SAD Compiler for Alan Labouseur's compilers class, which the SemanticAnalyzer
+ * works out for every expression and keeps on its Node in the AST.
+ *
+ * @author Tim Polizzi
+ */
+public enum Type {
+  INT("int"),
+  STRING("string"),
+  BOOLEAN("boolean"),
+  ERROR("error");
+
+  private final String name;
+
+  Type(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Gets the name of the type, as it is written in a program.
+   *
+   * @return The name of the type.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Works out the type a variable was declared as.
+   *
+   * @param name The name of the type, as it is written in a program.
+   * @return The type, or ERROR if there is no type by that name.
+   */
+  public static Type of(String name) {
+    switch (name) {
+      case "int":
+        return INT;
+      case "string":
+        return STRING;
+      case "boolean":
+        return BOOLEAN;
+      default:
+        return ERROR;
+    }
+  }
+}
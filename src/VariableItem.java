@@ -6,6 +6,7 @@
  */
 public class VariableItem {
 
+  private int id;
   private String temp;
   private char var;
   private int address;
@@ -15,7 +16,8 @@ public class VariableItem {
    * Generates a new instance of a VariableTable.
    */
   public VariableItem(char var, int totalVars, int scope) {
-    temp = "T" + totalVars + "XX";
+    id = totalVars;
+    temp = VariableTable.tempName(totalVars);
     this.var = var;
     this.scope = scope;
   }
@@ -32,6 +34,10 @@ public class VariableItem {
     return address;
   }
 
+  public int getId() {
+    return id;
+  }
+
   public String getTemp() {
     return temp;
   }
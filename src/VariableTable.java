@@ -1,26 +1,84 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * The variables that Code Generation has set aside memory for.
+ *
+ * Each variable gets an integer ID, which is its place in the table, and the variables of each
+ * scope are kept in an array indexed by their character, so finding one takes a single look per
+ * scope rather than a search of the whole table. Scopes are told apart by their IDs, and a variable
+ * is looked for in the scope it is used in and then in each scope around it.
+ */
 public class VariableTable {
 
+  /**
+   * How many characters a scope has room for. Besides the variables of the program, which are a
+   * through z, Code Generation makes temporary ones out of capital letters.
+   */
+  private static final int SLOTS = 128;
+
   private List<VariableItem> itemList;
   private int totalVars;
 
+  // The ID + 1 of the first variable added for each character in each scope, or 0 for none
+  private int[][] scopes;
+
+  // The ID of the scope around each scope, or -1 if there is none or it is not known
+  private int[] parents;
+
   public VariableTable() {
     itemList = new ArrayList<>();
     totalVars = 0;
+    scopes = new int[8][];
+    parents = new int[8];
+    Arrays.fill(parents, -1);
+  }
+
+  /**
+   * Adds a scope, so that variables that are not in it are looked for in the scope around it.
+   *
+   * @param scope The ID of the scope.
+   * @param parent The ID of the scope around it, or -1 if there is none.
+   */
+  public void addScope(int scope, int parent) {
+    if (scope < 0) {
+      return;
+    }
+    slots(scope);
+    parents[scope] = parent;
   }
 
   /**
    * Adds a variable to the table.
    *
    * @param var The original name of the variable in the source code.
+   * @param scope The ID of the scope the variable is in.
    */
   public void addVar(char var, int scope) {
     itemList.add(new VariableItem(var, totalVars, scope));
+
+    // A variable added to a scope twice is still found as the first one
+    if (scope >= 0 && var < SLOTS) {
+      int[] slots = slots(scope);
+      if (slots[var] == 0) {
+        slots[var] = totalVars + 1;
+      }
+    }
     totalVars++;
   }
 
+  /**
+   * Gets the temporary name a variable is written as until it has an address, which is "T", its ID
+   * and "XX".
+   *
+   * @param id The ID of the variable.
+   * @return The temporary name.
+   */
+  public static String tempName(int id) {
+    return "T" + id + "XX";
+  }
+
   /**
    * Gets the address in memory of a temporary variable.
    *
@@ -28,34 +86,58 @@ public class VariableTable {
    * @return The address in memory of the variable, or -1 if it could not be found.
    */
   public int getAddress(String temp) {
-    for (VariableItem item : itemList) {
-      if (item.getTemp().equals(temp)) {
-        return item.getAddress();
-      }
-    }
+    return getAddress(idOf(temp));
+  }
 
-    return -1;
+  /**
+   * Gets the address in memory of a variable.
+   *
+   * @param id The ID of the variable.
+   * @return The address in memory of the variable, or -1 if it could not be found.
+   */
+  public int getAddress(int id) {
+    if (id < 0 || id >= totalVars) {
+      return -1;
+    }
+    return itemList.get(id).getAddress();
   }
 
   /**
-   * Gets the temporary variable associated with a given character variable. Will get the item at
-   * the given scope or the next highest scope the variable could be found at if it is not in the
-   * given scope.
+   * Gets the temporary variable associated with a given character variable. Will get the item in
+   * the given scope or the closest scope around it the variable could be found in if it is not in
+   * the given scope.
    *
    * @param var The variable in the source code.
+   * @param scope The ID of the scope the variable is used in.
    * @return The stored temporary variable, or null if the item could not be found;
    */
-  public String getTemp(char var, int depth) {
-    for (VariableItem item : itemList) {
-      if (item.getVar() == var && item.getScope() == depth) {
-        return item.getTemp();
-      }
+  public String getTemp(char var, int scope) {
+    int id = getId(var, scope);
+    if (id < 0) {
+      return null;
     }
-    if(depth > 0) {
-      return getTemp(var, depth-1);
+    return itemList.get(id).getTemp();
+  }
+
+  /**
+   * Gets the ID of a variable, the same way as getTemp.
+   *
+   * @param var The variable in the source code.
+   * @param scope The ID of the scope the variable is used in.
+   * @return The ID of the variable, or -1 if it could not be found.
+   */
+  public int getId(char var, int scope) {
+    if (var >= SLOTS) {
+      return -1;
     }
 
-    return null;
+    for (int around = scope; around >= 0 && around < scopes.length; around = parents[around]) {
+      if (scopes[around] != null && scopes[around][var] != 0) {
+        return scopes[around][var] - 1;
+      }
+    }
+
+    return -1;
   }
 
   /**
@@ -65,10 +147,18 @@ public class VariableTable {
    * @param address The address the variable is to be set to.
    */
   public void setAddress(String temp, int address) {
-    for (VariableItem item : itemList) {
-      if (item.getTemp().equals(temp)) {
-        item.setAddress(address);
-      }
+    setAddress(idOf(temp), address);
+  }
+
+  /**
+   * Sets the address in memory of a variable.
+   *
+   * @param id The ID of the variable.
+   * @param address The address the variable is to be set to.
+   */
+  public void setAddress(int id, int address) {
+    if (id >= 0 && id < totalVars) {
+      itemList.get(id).setAddress(address);
     }
   }
 
@@ -95,12 +185,12 @@ public class VariableTable {
    * @return A well formatted String of variables and jump distances.
    */
   public String toString() {
-    String toReturn = String
-        .format("%-5s | %-5s | %-5s | %-5s\n", "Temp", "Var", "Scope", "Address");
+    StringBuilder toReturn = new StringBuilder(String
+        .format("%-5s | %-5s | %-5s | %-5s\n", "Temp", "Var", "Scope", "Address"));
 
     String line = "--------------------------------\n";
 
-    toReturn += line;
+    toReturn.append(line);
 
     for (int i = 0; i < totalVars; i++) {
       VariableItem currentItem = itemList.get(i);
@@ -108,10 +198,42 @@ public class VariableTable {
       String stringLine = String
           .format("%-5s | %-5s | %-5d | %X00\n", currentItem.getTemp(), currentItem.getVar(),
               currentItem.getScope(),currentItem.getAddress());
-      toReturn += stringLine;
+      toReturn.append(stringLine);
     }
 
-    return toReturn;
+    return toReturn.toString();
+  }
+
+  /**
+   * Gets the array of a scope, making room for it if it is not there yet.
+   */
+  private int[] slots(int scope) {
+    if (scope >= scopes.length) {
+      int length = scopes.length;
+      int capacity = Math.max(length * 2, scope + 1);
+      scopes = Arrays.copyOf(scopes, capacity);
+      parents = Arrays.copyOf(parents, capacity);
+      Arrays.fill(parents, length, capacity, -1);
+    }
+    if (scopes[scope] == null) {
+      scopes[scope] = new int[SLOTS];
+    }
+    return scopes[scope];
   }
 
+  /**
+   * Gets the ID out of a temporary name.
+   *
+   * @return The ID, or -1 if temp is not a temporary name.
+   */
+  private static int idOf(String temp) {
+    if (temp == null || !temp.startsWith("T") || !temp.endsWith("XX") || temp.length() < 4) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(temp.substring(1, temp.length() - 2));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
 }